@@ -0,0 +1,43 @@
+package fr.fresnault.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Saved Leboncoin ad pages used by the benchmarks, from
+ * src/jmh/resources/corpus.
+ * <p>
+ * The pages are anonymized: they keep the layout and sizes of real ad pages
+ * (about 300 KB, FLUX_STATE at the end of the body) with generated values.
+ */
+public final class Corpus {
+
+	public static final String HOUSE_PHOTOS = "house-photos";
+	public static final String HOUSE_NO_PHOTOS = "house-nophotos";
+	public static final String FLAT_PHOTOS = "flat-photos";
+	public static final String FLAT_NO_PHOTOS = "flat-nophotos";
+	public static final String LAND_PHOTOS = "land-photos";
+	public static final String LAND_NO_PHOTOS = "land-nophotos";
+	public static final String PARKING_PHOTOS = "parking-photos";
+	public static final String PARKING_NO_PHOTOS = "parking-nophotos";
+
+	private Corpus() {
+	}
+
+	public static byte[] read(String page) throws IOException {
+		try (InputStream input = Corpus.class.getResourceAsStream("/corpus/" + page + ".html")) {
+			if (input == null) {
+				throw new IOException("No page " + page + " in the corpus");
+			}
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+			return output.toByteArray();
+		}
+	}
+
+}
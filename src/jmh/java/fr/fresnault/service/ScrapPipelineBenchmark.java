@@ -0,0 +1,177 @@
+package fr.fresnault.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.PropertyPhoto;
+import fr.fresnault.service.fetch.FetchedPage;
+import fr.fresnault.service.parser.AdviewFingerprinter;
+import fr.fresnault.service.parser.AdviewMapper;
+import fr.fresnault.service.parser.AdviewMapper.Adview;
+import fr.fresnault.service.parser.FluxStateExtractor;
+
+/**
+ * Benchmarks each stage of {@link PropertyService#scrapProperty(Property, FetchedPage)}
+ * on the pages of the {@link Corpus}.
+ * <p>
+ * Run with the gc profiler (the default of the jmh profile) to get the
+ * allocation rate of each stage next to its throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScrapPipelineBenchmark {
+
+	@Param({ Corpus.HOUSE_PHOTOS, Corpus.HOUSE_NO_PHOTOS, Corpus.FLAT_PHOTOS, Corpus.FLAT_NO_PHOTOS,
+			Corpus.LAND_PHOTOS, Corpus.LAND_NO_PHOTOS, Corpus.PARKING_PHOTOS, Corpus.PARKING_NO_PHOTOS })
+	public String page;
+
+	private FetchedPage fetchedPage;
+
+	private JsonFactory jsonFactory;
+
+	private FluxStateExtractor extractor;
+
+	private AdviewFingerprinter fingerprinter;
+
+	private AdviewMapper mapper;
+
+	private PropertyService propertyService;
+
+	private byte[] attributes;
+
+	private byte[] images;
+
+	private String firstPublicationDate;
+
+	private Adview adview;
+
+	private Property scraped;
+
+	@Setup
+	public void setup() throws IOException {
+		byte[] body = Corpus.read(page);
+		fetchedPage = new FetchedPage(url(), url(), 200, StandardCharsets.UTF_8, body, 1);
+
+		ObjectMapper objectMapper = new ObjectMapper();
+		jsonFactory = objectMapper.getFactory();
+		extractor = new FluxStateExtractor(objectMapper);
+		mapper = new AdviewMapper();
+		fingerprinter = new AdviewFingerprinter();
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		propertyService = new PropertyService(null, extractor, fingerprinter, mapper,
+				new RefreshPolicy(applicationProperties), applicationProperties, new ConcurrentMapCacheManager(),
+				new MetricRegistry());
+
+		JsonNode adviewNode;
+		try (JsonParser parser = extractor.findAdview(body).get()) {
+			adviewNode = objectMapper.readTree(parser);
+		}
+		attributes = objectMapper.writeValueAsBytes(adviewNode.get("attributes"));
+		images = objectMapper.writeValueAsBytes(adviewNode.get("images"));
+		firstPublicationDate = adviewNode.get("first_publication_date").asText();
+		try (JsonParser parser = extractor.findAdview(body).get()) {
+			adview = mapper.read(parser);
+		}
+		scraped = propertyService.scrapProperty(new Property().url(url()), fetchedPage).getProperty();
+	}
+
+	/**
+	 * Whole scrap of a fetched page, the sum of the stages below.
+	 */
+	@Benchmark
+	public ScrapResult scrapProperty() {
+		return propertyService.scrapProperty(new Property().url(url()), fetchedPage);
+	}
+
+	/**
+	 * Scrap of a page that did not change since the last scrap: only the
+	 * fingerprint is computed.
+	 */
+	@Benchmark
+	public ScrapResult rescrapUnchanged() {
+		return propertyService.scrapProperty(scraped, fetchedPage);
+	}
+
+	@Benchmark
+	public int scriptLookup() {
+		return extractor.indexOfFluxState(fetchedPage.getBody());
+	}
+
+	/**
+	 * Tokenizes the whole adview without mapping it.
+	 */
+	@Benchmark
+	public JsonParser jsonParse() throws IOException {
+		try (JsonParser parser = extractor.findAdview(fetchedPage.getBody()).get()) {
+			parser.skipChildren();
+			return parser;
+		}
+	}
+
+	@Benchmark
+	public long fingerprint() throws IOException {
+		try (JsonParser parser = extractor.findAdview(fetchedPage.getBody()).get()) {
+			return fingerprinter.fingerprint(parser);
+		}
+	}
+
+	@Benchmark
+	public Map<String, String> getAttributes() throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(attributes)) {
+			parser.nextToken();
+			return mapper.readAttributes(parser);
+		}
+	}
+
+	@Benchmark
+	public Set<PropertyPhoto> getPhotos() throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(images)) {
+			parser.nextToken();
+			return mapper.readPhotos(parser);
+		}
+	}
+
+	@Benchmark
+	public Instant getCreatedDate() {
+		return mapper.parseCreatedDate(firstPublicationDate);
+	}
+
+	@Benchmark
+	public Property entityBuild() {
+		return mapper.build(adview, new Property());
+	}
+
+	private String url() {
+		return "https://www.leboncoin.fr/ventes_immobilieres/" + page + ".htm/";
+	}
+
+}
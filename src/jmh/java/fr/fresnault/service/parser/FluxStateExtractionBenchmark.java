@@ -0,0 +1,87 @@
+package fr.fresnault.service.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.fresnault.domain.Property;
+import fr.fresnault.service.Corpus;
+
+/**
+ * Compares the DOM lookup of the FLUX_STATE script with the streaming
+ * extraction of {@link FluxStateExtractor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FluxStateExtractionBenchmark {
+
+	private byte[] page;
+
+	private FluxStateExtractor extractor;
+
+	private AdviewMapper mapper;
+
+	@Setup
+	public void setup() throws IOException {
+		page = Corpus.read(Corpus.FLAT_PHOTOS);
+		extractor = new FluxStateExtractor(new ObjectMapper());
+		mapper = new AdviewMapper();
+	}
+
+	/**
+	 * DOM extraction mode: Jsoup document, script lookup, then the
+	 * FLUX_STATE script text.
+	 */
+	@Benchmark
+	public Property domProperty() throws IOException {
+		Document document = Jsoup.parse(new ByteArrayInputStream(page), null, "");
+		String json = document.getElementsByTag("script").stream()
+				.filter(e -> e.data().startsWith("window.FLUX_STATE")).findFirst().get().data();
+		try (JsonParser adview = extractor.findAdviewInScript(json).get()) {
+			return mapper.map(adview, new Property());
+		}
+	}
+
+	/**
+	 * STREAM extraction mode: marker lookup in the page bytes.
+	 */
+	@Benchmark
+	public Property streamProperty() throws IOException {
+		try (JsonParser adview = extractor.findAdview(page).get()) {
+			return mapper.map(adview, new Property());
+		}
+	}
+
+	@Benchmark
+	public String domScriptLookup() throws IOException {
+		Document document = Jsoup.parse(new ByteArrayInputStream(page), null, "");
+		return document.getElementsByTag("script").stream().filter(e -> e.data().startsWith("window.FLUX_STATE"))
+				.findFirst().get().data();
+	}
+
+	@Benchmark
+	public int streamMarkerLookup() {
+		return extractor.indexOfFluxState(page);
+	}
+
+}
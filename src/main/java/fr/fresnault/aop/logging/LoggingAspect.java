@@ -1,5 +1,9 @@
 package fr.fresnault.aop.logging;
 
+import fr.fresnault.config.ApplicationProperties;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import io.github.jhipster.config.JHipsterConstants;
 
 import org.aspectj.lang.JoinPoint;
@@ -8,26 +12,68 @@ import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Aspect for logging execution of service and repository Spring components.
  *
- * By default, it only runs with the "dev" profile.
+ * By default, it only runs with the "dev" profile, where it logs every call
+ * with its arguments and result. With the other profiles, it can be enabled
+ * through {@link ApplicationProperties.Tracing}: every call is then timed in
+ * the metrics registry, and only a sample of the calls is logged, with their
+ * arguments and result cut to a maximum length. The calls which are not
+ * sampled render nothing.
  */
 @Aspect
 public class LoggingAspect {
 
+    /**
+     * The getId() method of each type rendered, null when it has none.
+     */
+    private static final ClassValue<Method> ID_GETTERS = new ClassValue<Method>() {
+
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                Method getter = type.getMethod("getId");
+                return getter.getReturnType() == void.class ? null : getter;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private final Environment env;
 
-    public LoggingAspect(Environment env) {
+    private final boolean development;
+
+    private final ApplicationProperties.Tracing tracing;
+
+    private final MetricRegistry metricRegistry;
+
+    private final ConcurrentMap<Method, MethodTrace> traces = new ConcurrentHashMap<>();
+
+    public LoggingAspect(Environment env, ApplicationProperties.Tracing tracing, MetricRegistry metricRegistry) {
         this.env = env;
+        this.development = env.acceptsProfiles(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT);
+        this.tracing = tracing;
+        this.metricRegistry = metricRegistry;
     }
 
     /**
@@ -77,6 +123,9 @@ public class LoggingAspect {
      */
     @Around("applicationPackagePointcut() && springBeanPointcut()")
     public Object logAround(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!development) {
+            return traceAround(joinPoint);
+        }
         if (log.isDebugEnabled()) {
             log.debug("Enter: {}.{}() with argument[s] = {}", joinPoint.getSignature().getDeclaringTypeName(),
                 joinPoint.getSignature().getName(), Arrays.toString(joinPoint.getArgs()));
@@ -95,4 +144,123 @@ public class LoggingAspect {
             throw e;
         }
     }
+
+    /**
+     * Times the call, and logs it when it is sampled.
+     */
+    private Object traceAround(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodTrace trace = getTrace(joinPoint);
+        boolean sampled = trace.sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < trace.sampleRate;
+        Object result = null;
+        long start = System.nanoTime();
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (IllegalArgumentException e) {
+            log.error("Illegal argument: {} in {}()", render(joinPoint.getArgs()), trace.name);
+
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            trace.timer.update(elapsed, TimeUnit.NANOSECONDS);
+            if (sampled) {
+                log.info("Trace: {}() in {} us with argument[s] = {} and result = {}", trace.name,
+                    TimeUnit.NANOSECONDS.toMicros(elapsed), render(joinPoint.getArgs()), render(result));
+            }
+        }
+    }
+
+    private MethodTrace getTrace(ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodTrace trace = traces.get(method);
+        if (trace == null) {
+            trace = new MethodTrace(joinPoint.getSignature().getDeclaringType(), method.getName());
+            MethodTrace previous = traces.putIfAbsent(method, trace);
+            if (previous != null) {
+                trace = previous;
+            }
+        }
+        return trace;
+    }
+
+    private String render(Object[] args) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            append(builder, args[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    private String render(Object value) {
+        StringBuilder builder = new StringBuilder();
+        append(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the value without calling its toString(), except for the
+     * scalar values: the texts are cut to the maximum length, the
+     * collections, maps and arrays are rendered by their size, and the other
+     * objects by their type and id.
+     */
+    private void append(StringBuilder builder, Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Character
+            || value instanceof Enum) {
+            builder.append(value);
+        } else if (value instanceof CharSequence) {
+            CharSequence text = (CharSequence) value;
+            if (text.length() > tracing.getMaxArgumentLength()) {
+                builder.append(text, 0, tracing.getMaxArgumentLength()).append("...");
+            } else {
+                builder.append(text);
+            }
+        } else if (value instanceof Optional) {
+            builder.append("Optional[");
+            append(builder, ((Optional<?>) value).orElse(null));
+            builder.append(']');
+        } else if (value instanceof Collection) {
+            builder.append(value.getClass().getSimpleName()).append("[size=").append(((Collection<?>) value).size()).append(']');
+        } else if (value instanceof Map) {
+            builder.append(value.getClass().getSimpleName()).append("[size=").append(((Map<?, ?>) value).size()).append(']');
+        } else if (value.getClass().isArray()) {
+            builder.append(value.getClass().getComponentType().getSimpleName()).append("[length=")
+                .append(Array.getLength(value)).append(']');
+        } else {
+            builder.append(value.getClass().getSimpleName());
+            Method idGetter = ID_GETTERS.get(value.getClass());
+            if (idGetter != null) {
+                builder.append("[id=");
+                try {
+                    append(builder, idGetter.invoke(value));
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    builder.append('?');
+                }
+                builder.append(']');
+            }
+        }
+    }
+
+    /**
+     * The name, timer and sample rate of a method, resolved on its first call.
+     */
+    private final class MethodTrace {
+
+        private final String name;
+
+        private final Timer timer;
+
+        private final double sampleRate;
+
+        private MethodTrace(Class<?> type, String methodName) {
+            this.name = type.getSimpleName() + "." + methodName;
+            // Prefixed so that the timers of the @Timed methods are not updated twice
+            this.timer = metricRegistry.timer(MetricRegistry.name("trace", type.getName(), methodName));
+            Map<String, Double> sampleRates = tracing.getSampleRates();
+            this.sampleRate = sampleRates.getOrDefault(name,
+                sampleRates.getOrDefault(type.getSimpleName(), tracing.getSampleRate()));
+        }
+    }
 }
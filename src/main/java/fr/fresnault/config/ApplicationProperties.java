@@ -1,5 +1,12 @@
 package fr.fresnault.config;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -11,4 +18,629 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Consumer consumer = new Consumer();
+
+    private final Fetch fetch = new Fetch();
+
+    private final Scrap scrap = new Scrap();
+
+    private final BulkWrite bulkWrite = new BulkWrite();
+
+    private final Refresh refresh = new Refresh();
+
+    private final Cache cache = new Cache();
+
+    private final Tracing tracing = new Tracing();
+
+    public Consumer getConsumer() {
+        return consumer;
+    }
+
+    public Fetch getFetch() {
+        return fetch;
+    }
+
+    public Scrap getScrap() {
+        return scrap;
+    }
+
+    public BulkWrite getBulkWrite() {
+        return bulkWrite;
+    }
+
+    public Refresh getRefresh() {
+        return refresh;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Tracing getTracing() {
+        return tracing;
+    }
+
+    /**
+     * Settings of the RabbitMQ listener draining the leboncoin queue.
+     * <p>
+     * With the MANUAL acknowledge mode the listener returns as soon as the
+     * fetch is started, so the consumers are never busy long enough to be
+     * scaled up: the scraps in flight are bounded by {@code concurrency}
+     * times {@code prefetch}, and {@code maxConcurrency} only applies to the
+     * AUTO and NONE modes.
+     */
+    public static class Consumer {
+
+        private int concurrency = 4;
+
+        private int maxConcurrency = 16;
+
+        private int prefetch = 10;
+
+        private AcknowledgeMode acknowledgeMode = AcknowledgeMode.MANUAL;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getPrefetch() {
+            return prefetch;
+        }
+
+        public void setPrefetch(int prefetch) {
+            this.prefetch = prefetch;
+        }
+
+        public AcknowledgeMode getAcknowledgeMode() {
+            return acknowledgeMode;
+        }
+
+        public void setAcknowledgeMode(AcknowledgeMode acknowledgeMode) {
+            this.acknowledgeMode = acknowledgeMode;
+        }
+    }
+
+    /**
+     * Settings of the asynchronous HTTP client fetching the ad pages.
+     */
+    public static class Fetch {
+
+        private int maxConnections = 200;
+
+        private int maxConnectionsPerRoute = 100;
+
+        private int connectTimeout = 5000;
+
+        private int socketTimeout = 15000;
+
+        private int maxAttempts = 5;
+
+        private long retryDelay = 1000;
+
+        private long maxRetryDelay = 30000;
+
+        private final RateLimit rateLimit = new RateLimit();
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getRetryDelay() {
+            return retryDelay;
+        }
+
+        public void setRetryDelay(long retryDelay) {
+            this.retryDelay = retryDelay;
+        }
+
+        public long getMaxRetryDelay() {
+            return maxRetryDelay;
+        }
+
+        public void setMaxRetryDelay(long maxRetryDelay) {
+            this.maxRetryDelay = maxRetryDelay;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        /**
+         * Per host token bucket pacing the requests.
+         * <p>
+         * The rate starts at {@code rate} requests per second and adapts to the
+         * throttling of the site: it is multiplied by {@code decreaseFactor} when
+         * a 429 or 403 is received, then grows back by {@code increase} requests
+         * per second every second, between {@code minRate} and {@code maxRate}.
+         */
+        public static class RateLimit {
+
+            private boolean enabled = true;
+
+            private double rate = 5;
+
+            private int burst = 10;
+
+            private double minRate = 0.5;
+
+            private double maxRate = 20;
+
+            private double increase = 0.1;
+
+            private double decreaseFactor = 0.5;
+
+            private long throttleCooldown = 5000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public double getRate() {
+                return rate;
+            }
+
+            public void setRate(double rate) {
+                this.rate = rate;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+
+            public double getMinRate() {
+                return minRate;
+            }
+
+            public void setMinRate(double minRate) {
+                this.minRate = minRate;
+            }
+
+            public double getMaxRate() {
+                return maxRate;
+            }
+
+            public void setMaxRate(double maxRate) {
+                this.maxRate = maxRate;
+            }
+
+            public double getIncrease() {
+                return increase;
+            }
+
+            public void setIncrease(double increase) {
+                this.increase = increase;
+            }
+
+            public double getDecreaseFactor() {
+                return decreaseFactor;
+            }
+
+            public void setDecreaseFactor(double decreaseFactor) {
+                this.decreaseFactor = decreaseFactor;
+            }
+
+            public long getThrottleCooldown() {
+                return throttleCooldown;
+            }
+
+            public void setThrottleCooldown(long throttleCooldown) {
+                this.throttleCooldown = throttleCooldown;
+            }
+        }
+    }
+
+    /**
+     * Settings of the extraction of the ads from the fetched pages.
+     */
+    public static class Scrap {
+
+        private ExtractionMode extractionMode = ExtractionMode.STREAM;
+
+        private String adUrl = "https://www.leboncoin.fr/ventes_immobilieres/{id}.htm/";
+
+        private long jobRetention = 3600000;
+
+        private int maxPendingJobs = 1000;
+
+        private Duration removedAdTimeToLive = Duration.ofDays(1);
+
+        private long removedAdMaxEntries = 100000;
+
+        private List<String> listingPaths = Arrays.asList("/recherche", "/annonces/offres", "/ventes_immobilieres/offres");
+
+        public ExtractionMode getExtractionMode() {
+            return extractionMode;
+        }
+
+        public void setExtractionMode(ExtractionMode extractionMode) {
+            this.extractionMode = extractionMode;
+        }
+
+        public String getAdUrl() {
+            return adUrl;
+        }
+
+        public void setAdUrl(String adUrl) {
+            this.adUrl = adUrl;
+        }
+
+        public long getJobRetention() {
+            return jobRetention;
+        }
+
+        public void setJobRetention(long jobRetention) {
+            this.jobRetention = jobRetention;
+        }
+
+        public int getMaxPendingJobs() {
+            return maxPendingJobs;
+        }
+
+        public void setMaxPendingJobs(int maxPendingJobs) {
+            this.maxPendingJobs = maxPendingJobs;
+        }
+
+        public Duration getRemovedAdTimeToLive() {
+            return removedAdTimeToLive;
+        }
+
+        public void setRemovedAdTimeToLive(Duration removedAdTimeToLive) {
+            this.removedAdTimeToLive = removedAdTimeToLive;
+        }
+
+        public long getRemovedAdMaxEntries() {
+            return removedAdMaxEntries;
+        }
+
+        public void setRemovedAdMaxEntries(long removedAdMaxEntries) {
+            this.removedAdMaxEntries = removedAdMaxEntries;
+        }
+
+        public List<String> getListingPaths() {
+            return listingPaths;
+        }
+
+        public void setListingPaths(List<String> listingPaths) {
+            this.listingPaths = listingPaths;
+        }
+
+        public enum ExtractionMode {
+            /** Parse the whole page with Jsoup and look for the FLUX_STATE script. */
+            DOM,
+            /** Scan the page bytes for the FLUX_STATE marker and stream only its JSON. */
+            STREAM
+        }
+    }
+
+    /**
+     * Settings of the batched writes of the scraped properties.
+     */
+    public static class BulkWrite {
+
+        private int batchSize = 100;
+
+        private long flushInterval = 200;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+    }
+
+    /**
+     * Settings of the refresh of the known ads.
+     * <p>
+     * Each ad is scraped again after its own interval: the interval starts at
+     * {@code initialInterval}, is multiplied by {@code backoffFactor} each time
+     * the ad did not change and by {@code tightenFactor} each time its price
+     * moved, between {@code minInterval} and {@code maxInterval}.
+     */
+    public static class Refresh {
+
+        private boolean enabled = true;
+
+        private long pollInterval = 60000;
+
+        private int batchSize = 500;
+
+        private Duration lease = Duration.ofHours(1);
+
+        private Duration initialInterval = Duration.ofDays(1);
+
+        private Duration minInterval = Duration.ofHours(2);
+
+        private Duration maxInterval = Duration.ofDays(30);
+
+        private double backoffFactor = 1.5;
+
+        private double tightenFactor = 0.5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getLease() {
+            return lease;
+        }
+
+        public void setLease(Duration lease) {
+            this.lease = lease;
+        }
+
+        public Duration getInitialInterval() {
+            return initialInterval;
+        }
+
+        public void setInitialInterval(Duration initialInterval) {
+            this.initialInterval = initialInterval;
+        }
+
+        public Duration getMinInterval() {
+            return minInterval;
+        }
+
+        public void setMinInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+        }
+
+        public Duration getMaxInterval() {
+            return maxInterval;
+        }
+
+        public void setMaxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+        }
+
+        public double getBackoffFactor() {
+            return backoffFactor;
+        }
+
+        public void setBackoffFactor(double backoffFactor) {
+            this.backoffFactor = backoffFactor;
+        }
+
+        public double getTightenFactor() {
+            return tightenFactor;
+        }
+
+        public void setTightenFactor(double tightenFactor) {
+            this.tightenFactor = tightenFactor;
+        }
+    }
+
+    /**
+     * Settings of the named caches. Each cache is sized in megabytes on the
+     * heap, off the heap, and optionally on disk, so a large hot set can be
+     * kept out of the garbage collected heap.
+     */
+    public static class Cache {
+
+        /** Directory of the disk tiers, none of them is created when empty. */
+        private String diskPath;
+
+        private final Pool propertyById = new Pool(16, 256, Duration.ofHours(1));
+
+        private final Pool cityByZipCode = new Pool(2, 0, Duration.ofDays(1));
+
+        /** Size of each of the users by login and by email caches. */
+        private final Pool user = new Pool(1, 0, Duration.ofHours(1));
+
+        /** Verified tokens kept, each until it expires. */
+        private long verifiedTokenMaxEntries = 10000;
+
+        public String getDiskPath() {
+            return diskPath;
+        }
+
+        public void setDiskPath(String diskPath) {
+            this.diskPath = diskPath;
+        }
+
+        public Pool getPropertyById() {
+            return propertyById;
+        }
+
+        public Pool getCityByZipCode() {
+            return cityByZipCode;
+        }
+
+        public Pool getUser() {
+            return user;
+        }
+
+        public long getVerifiedTokenMaxEntries() {
+            return verifiedTokenMaxEntries;
+        }
+
+        public void setVerifiedTokenMaxEntries(long verifiedTokenMaxEntries) {
+            this.verifiedTokenMaxEntries = verifiedTokenMaxEntries;
+        }
+
+        /**
+         * Sizes of the tiers of a cache, in megabytes. A tier of size 0 is not
+         * created; each tier must be larger than the one above it.
+         */
+        public static class Pool {
+
+            private long heap;
+
+            private long offHeap;
+
+            private long disk;
+
+            private Duration timeToLive;
+
+            Pool(long heap, long offHeap, Duration timeToLive) {
+                this.heap = heap;
+                this.offHeap = offHeap;
+                this.timeToLive = timeToLive;
+            }
+
+            public long getHeap() {
+                return heap;
+            }
+
+            public void setHeap(long heap) {
+                this.heap = heap;
+            }
+
+            public long getOffHeap() {
+                return offHeap;
+            }
+
+            public void setOffHeap(long offHeap) {
+                this.offHeap = offHeap;
+            }
+
+            public long getDisk() {
+                return disk;
+            }
+
+            public void setDisk(long disk) {
+                this.disk = disk;
+            }
+
+            public Duration getTimeToLive() {
+                return timeToLive;
+            }
+
+            public void setTimeToLive(Duration timeToLive) {
+                this.timeToLive = timeToLive;
+            }
+        }
+    }
+
+    /**
+     * Settings of the logging aspect outside of the "dev" profile. Every call
+     * is timed in the metrics registry, and only a sample of the calls is
+     * logged, with their arguments cut to {@code maxArgumentLength}
+     * characters. A sample rate is looked up by method, as
+     * {@code PropertyResource.getAllProperties}, then by class, as
+     * {@code PropertyResource}, then defaults to {@code sampleRate}.
+     */
+    public static class Tracing {
+
+        private boolean enabled = false;
+
+        private double sampleRate = 0.001;
+
+        private final Map<String, Double> sampleRates = new HashMap<>();
+
+        private int maxArgumentLength = 200;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Map<String, Double> getSampleRates() {
+            return sampleRates;
+        }
+
+        public int getMaxArgumentLength() {
+            return maxArgumentLength;
+        }
+
+        public void setMaxArgumentLength(int maxArgumentLength) {
+            this.maxArgumentLength = maxArgumentLength;
+        }
+    }
 }
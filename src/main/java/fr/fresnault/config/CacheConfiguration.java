@@ -1,37 +1,143 @@
 package fr.fresnault.config;
 
+import java.io.File;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+import javax.cache.Caching;
 
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.ehcache.impl.config.persistence.CacheManagerPersistenceConfiguration;
 import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
 
-import io.github.jhipster.config.JHipsterProperties;
+import fr.fresnault.repository.CityRepository;
+import fr.fresnault.repository.PropertyRepository;
+import fr.fresnault.repository.UserRepository;
+import fr.fresnault.security.jwt.TokenProvider;
+import fr.fresnault.security.jwt.VerifiedToken;
+import fr.fresnault.service.PropertyService;
 
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.*;
+import org.springframework.util.StringUtils;
 
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
 
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    private final javax.cache.configuration.Configuration<Object, Object> removedAdsConfiguration;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache =
-            jHipsterProperties.getCache().getEhcache();
+    private final ApplicationProperties.Cache cache;
 
-        jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+    public CacheConfiguration(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Scrap scrap = applicationProperties.getScrap();
+        removedAdsConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
             CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
-                ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
+                ResourcePoolsBuilder.heap(scrap.getRemovedAdMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(scrap.getRemovedAdTimeToLive()))
                 .build());
+
+        cache = applicationProperties.getCache();
+    }
+
+    /**
+     * The Ehcache manager is built here rather than by Spring Boot, so that
+     * the directory of the disk tiers can be given to it.
+     */
+    @Bean
+    public javax.cache.CacheManager jCacheCacheManager() {
+        EhcacheCachingProvider provider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        ClassLoader classLoader = getClass().getClassLoader();
+        DefaultConfiguration configuration = StringUtils.hasText(cache.getDiskPath())
+            ? new DefaultConfiguration(classLoader, new CacheManagerPersistenceConfiguration(new File(cache.getDiskPath())))
+            : new DefaultConfiguration(classLoader);
+        javax.cache.CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), configuration);
+        cacheManagerCustomizer().customize(cacheManager);
+        return cacheManager;
     }
 
     @Bean
     public JCacheManagerCustomizer cacheManagerCustomizer() {
         return cm -> {
+            cm.createCache(PropertyService.REMOVED_ADS_CACHE, removedAdsConfiguration);
+            cm.createCache(PropertyRepository.PROPERTY_BY_ID_CACHE, tieredConfiguration(cache.getPropertyById()));
+            cm.enableStatistics(PropertyRepository.PROPERTY_BY_ID_CACHE, true);
+            cm.createCache(CityRepository.CITY_BY_ZIP_CODE_CACHE, tieredConfiguration(cache.getCityByZipCode()));
+            cm.createCache(UserRepository.USERS_BY_LOGIN_CACHE, userConfiguration());
+            cm.createCache(UserRepository.USERS_BY_EMAIL_CACHE, userConfiguration());
+            cm.createCache(TokenProvider.VERIFIED_TOKENS_CACHE, verifiedTokensConfiguration());
+            cm.enableStatistics(TokenProvider.VERIFIED_TOKENS_CACHE, true);
             // jhipster-needle-ehcache-add-entry
         };
     }
+
+    /**
+     * @return a configuration sized in bytes, with an off-heap and a disk tier
+     *         when they have a size. The entries of these tiers are serialized.
+     */
+    private javax.cache.configuration.Configuration<Object, Object> tieredConfiguration(
+        ApplicationProperties.Cache.Pool pool) {
+        return Eh107Configuration.fromEhcacheCacheConfiguration(tieredConfigurationBuilder(pool).build());
+    }
+
+    /**
+     * @return a tiered configuration whose heap entries are copies too, as the
+     *         user service modifies the users it reads before saving them
+     */
+    private javax.cache.configuration.Configuration<Object, Object> userConfiguration() {
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            tieredConfigurationBuilder(cache.getUser()).withValueSerializingCopier().build());
+    }
+
+    private CacheConfigurationBuilder<Object, Object> tieredConfigurationBuilder(ApplicationProperties.Cache.Pool pool) {
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder()
+            .heap(pool.getHeap(), MemoryUnit.MB);
+        if (pool.getOffHeap() > 0) {
+            resourcePools = resourcePools.offheap(pool.getOffHeap(), MemoryUnit.MB);
+        }
+        if (pool.getDisk() > 0) {
+            if (!StringUtils.hasText(cache.getDiskPath())) {
+                throw new IllegalStateException("application.cache.disk-path is required by the disk tiers");
+            }
+            resourcePools = resourcePools.disk(pool.getDisk(), MemoryUnit.MB);
+        }
+        return CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools)
+            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(pool.getTimeToLive()));
+    }
+
+    /**
+     * @return a heap configuration where each verified token expires with the
+     *         token itself
+     */
+    private javax.cache.configuration.Configuration<Object, Object> verifiedTokensConfiguration() {
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(cache.getVerifiedTokenMaxEntries()))
+                .withExpiry(new ExpiryPolicy<Object, Object>() {
+
+                    @Override
+                    public Duration getExpiryForCreation(Object key, Object value) {
+                        Duration validity = Duration.between(Instant.now(), ((VerifiedToken) value).getExpiration());
+                        return validity.isNegative() ? Duration.ZERO : validity;
+                    }
+
+                    @Override
+                    public Duration getExpiryForAccess(Object key, Supplier<?> value) {
+                        return null;
+                    }
+
+                    @Override
+                    public Duration getExpiryForUpdate(Object key, Supplier<?> oldValue, Object newValue) {
+                        return getExpiryForCreation(key, newValue);
+                    }
+                })
+                .build());
+    }
 }
@@ -1,23 +1,51 @@
 package fr.fresnault.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JavaTypeMapper.TypePrecedence;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @Configuration
 public class ConfigurationRabbitMQ {
 
 	public static final String EXCHANGE_NAME = "properties";
 	public static final String QUEUE_NAME = "leboncoin";
+	public static final String ROUTING_KEY = "leboncoin";
+
+	public static final String DEAD_LETTER_EXCHANGE_NAME = "properties.dlx";
+	public static final String DEAD_LETTER_QUEUE_NAME = "leboncoin.dlq";
+
+	public static final String CACHE_EXCHANGE_NAME = "cache-invalidations";
+
+	public static final String SCRAP_CONTAINER_FACTORY = "scrapListenerContainerFactory";
 
 	@Bean
 	public TopicExchange appExchange() {
 		return new TopicExchange(EXCHANGE_NAME);
 	}
 
+	/**
+	 * The queue is declared without arguments, as it always was, so that the
+	 * declaration matches the queue already existing on the brokers. Its dead
+	 * letter exchange is set by the "leboncoin-dlx" policy described in the
+	 * README: the rejected messages are then routed to the dead letter queue,
+	 * from which they can be moved back once the cause of their failure is
+	 * fixed.
+	 */
 	@Bean
 	public Queue appQueue() {
 		return new Queue(QUEUE_NAME);
@@ -25,7 +53,74 @@ public class ConfigurationRabbitMQ {
 
 	@Bean
 	public Binding declareBinding() {
-		return BindingBuilder.bind(appQueue()).to(appExchange()).with("leboncoin");
+		return BindingBuilder.bind(appQueue()).to(appExchange()).with(ROUTING_KEY);
+	}
+
+	@Bean
+	public DirectExchange deadLetterExchange() {
+		return new DirectExchange(DEAD_LETTER_EXCHANGE_NAME);
+	}
+
+	@Bean
+	public Queue deadLetterQueue() {
+		return QueueBuilder.durable(DEAD_LETTER_QUEUE_NAME).build();
+	}
+
+	@Bean
+	public Binding declareDeadLetterBinding() {
+		return BindingBuilder.bind(deadLetterQueue()).to(deadLetterExchange()).with(ROUTING_KEY);
+	}
+
+	/**
+	 * Each node binds its own queue to the cache invalidation fanout, deleted
+	 * when the node stops, so every node receives every invalidation.
+	 */
+	@Bean
+	public FanoutExchange cacheExchange() {
+		return new FanoutExchange(CACHE_EXCHANGE_NAME);
+	}
+
+	@Bean
+	public Queue cacheInvalidationQueue() {
+		return new AnonymousQueue();
+	}
+
+	@Bean
+	public Binding declareCacheInvalidationBinding() {
+		return BindingBuilder.bind(cacheInvalidationQueue()).to(cacheExchange());
+	}
+
+	/**
+	 * Messages are JSON documents, mapped on the listener argument type
+	 * whatever the type id sent by the producer.
+	 */
+	@Bean
+	public MessageConverter jsonMessageConverter(ObjectMapper objectMapper) {
+		Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter(objectMapper);
+		converter.setTypePrecedence(TypePrecedence.INFERRED);
+		return converter;
+	}
+
+	/**
+	 * Container factory of the scrap workers, sized by the
+	 * "application.consumer" properties so that several instances can drain
+	 * the queue together. A failed message is requeued unless the listener
+	 * rejects it, to the dead letter queue.
+	 */
+	@Bean(name = SCRAP_CONTAINER_FACTORY)
+	public SimpleRabbitListenerContainerFactory scrapListenerContainerFactory(
+			SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+			ApplicationProperties applicationProperties) {
+		ApplicationProperties.Consumer consumer = applicationProperties.getConsumer();
+
+		SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+		configurer.configure(factory, connectionFactory);
+		factory.setConcurrentConsumers(consumer.getConcurrency());
+		factory.setMaxConcurrentConsumers(Math.max(consumer.getConcurrency(), consumer.getMaxConcurrency()));
+		factory.setPrefetchCount(consumer.getPrefetch());
+		factory.setAcknowledgeMode(consumer.getAcknowledgeMode());
+		factory.setDefaultRequeueRejected(true);
+		return factory;
 	}
 
-}
\ No newline at end of file
+}
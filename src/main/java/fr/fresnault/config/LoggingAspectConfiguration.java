@@ -2,8 +2,10 @@ package fr.fresnault.config;
 
 import fr.fresnault.aop.logging.LoggingAspect;
 
+import com.codahale.metrics.MetricRegistry;
 import io.github.jhipster.config.JHipsterConstants;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.Environment;
 
@@ -13,7 +15,19 @@ public class LoggingAspectConfiguration {
 
     @Bean
     @Profile(JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)
-    public LoggingAspect loggingAspect(Environment env) {
-        return new LoggingAspect(env);
+    public LoggingAspect loggingAspect(Environment env, ApplicationProperties applicationProperties,
+                                       MetricRegistry metricRegistry) {
+        return new LoggingAspect(env, applicationProperties.getTracing(), metricRegistry);
+    }
+
+    /**
+     * The sampled and timed logging aspect of the other profiles.
+     */
+    @Bean
+    @Profile("!" + JHipsterConstants.SPRING_PROFILE_DEVELOPMENT)
+    @ConditionalOnProperty(prefix = "application.tracing", name = "enabled")
+    public LoggingAspect tracingAspect(Environment env, ApplicationProperties applicationProperties,
+                                       MetricRegistry metricRegistry) {
+        return new LoggingAspect(env, applicationProperties.getTracing(), metricRegistry);
     }
 }
@@ -0,0 +1,66 @@
+package fr.fresnault.config.dbmigrations;
+
+import fr.fresnault.domain.City;
+import fr.fresnault.domain.Property;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collections;
+
+/**
+ * Fills the city collection from the cities embedded in the properties, and
+ * links the properties to them
+ */
+@ChangeLog(order = "004")
+public class CityMigration {
+
+    /**
+     * One city per (zip code, name), which the city registry relies on.
+     */
+    @ChangeSet(order = "01", author = "initiator", id = "01-addCityIndex")
+    public void addCityIndex(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(City.class).ensureIndex(new Index()
+            .on("zip_code", Sort.Direction.ASC)
+            .on("name", Sort.Direction.ASC)
+            .named("zip_code_name")
+            .unique());
+    }
+
+    @ChangeSet(order = "02", author = "initiator", id = "02-linkPropertyCities")
+    public void linkPropertyCities(MongoTemplate mongoTemplate) {
+        Document group = new Document("$group", new Document("_id",
+            new Document("name", "$city.name").append("zip_code", "$city.zip_code")));
+        for (Document pair : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Property.class))
+            .aggregate(Collections.singletonList(group)).allowDiskUse(true)) {
+            Document key = (Document) pair.get("_id");
+            String name = key.getString("name");
+            String zipCode = key.getString("zip_code");
+            if ((name == null || name.isEmpty()) && (zipCode == null || zipCode.isEmpty())) {
+                continue;
+            }
+            City city = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("zipCode").is(zipCode).and("name").is(name)),
+                new Update().setOnInsert("zipCode", zipCode).setOnInsert("name", name),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), City.class);
+            mongoTemplate.updateMulti(
+                Query.query(Criteria.where("city.name").is(name).and("city.zip_code").is(zipCode)),
+                Update.update("city._id", city.getId()), Property.class);
+        }
+    }
+
+    @ChangeSet(order = "03", author = "initiator", id = "03-addPropertyCityIndex")
+    public void addPropertyCityIndex(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(Property.class).ensureIndex(new Index()
+            .on("city._id", Sort.Direction.ASC)
+            .named("city_id"));
+    }
+}
@@ -0,0 +1,29 @@
+package fr.fresnault.config.dbmigrations;
+
+import fr.fresnault.domain.PriceHistory;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Creates the indexes of the price_history collection
+ */
+@ChangeLog(order = "003")
+public class PriceHistoryMigration {
+
+    /**
+     * One bucket per ad and per month, read in month order.
+     */
+    @ChangeSet(order = "01", author = "initiator", id = "01-addPriceHistoryBucketIndex")
+    public void addPriceHistoryBucketIndex(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(PriceHistory.class).ensureIndex(new Index()
+            .on("ref_source", Sort.Direction.ASC)
+            .on("ref_id", Sort.Direction.ASC)
+            .on("month", Sort.Direction.ASC)
+            .named("ref_source_ref_id_month")
+            .unique());
+    }
+}
@@ -0,0 +1,105 @@
+package fr.fresnault.config.dbmigrations;
+
+import fr.fresnault.domain.Property;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates the indexes of the property collection
+ */
+@ChangeLog(order = "002")
+public class PropertyIndexesMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Properties were saved again each time their ad was scraped. Keeps the
+     * most recently scraped document of each ad, so that the unique index can
+     * be built: the one refreshed last, else the one inserted last.
+     */
+    @ChangeSet(order = "00", author = "initiator", id = "00-removeDuplicateProperties")
+    @SuppressWarnings("unchecked")
+    public void removeDuplicateProperties(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Property.class));
+        List<WriteModel<Document>> deletes = new ArrayList<>(BATCH_SIZE);
+        for (Document duplicates : collection.aggregate(Arrays.asList(
+            Aggregates.match(Filters.exists("ref_id")),
+            Aggregates.sort(Sorts.descending("next_refresh_at", "_id")),
+            Aggregates.group(new Document("ref_source", "$ref_source").append("ref_id", "$ref_id"),
+                Accumulators.push("ids", "$_id"), Accumulators.sum("count", 1)),
+            Aggregates.match(Filters.gt("count", 1)))).allowDiskUse(true)) {
+            List<Object> ids = (List<Object>) duplicates.get("ids");
+            deletes.add(new DeleteManyModel<>(Filters.in("_id", ids.subList(1, ids.size()))));
+            if (deletes.size() == BATCH_SIZE) {
+                collection.bulkWrite(deletes, new BulkWriteOptions().ordered(false));
+                deletes.clear();
+            }
+        }
+        if (!deletes.isEmpty()) {
+            collection.bulkWrite(deletes, new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    /**
+     * One document per ad. Properties saved before their reference was filled
+     * have no ref_id and are left out of the index.
+     */
+    @ChangeSet(order = "01", author = "initiator", id = "01-addPropertyRefIndex")
+    public void addPropertyRefIndex(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(Property.class).ensureIndex(new Index()
+            .on("ref_source", Sort.Direction.ASC)
+            .on("ref_id", Sort.Direction.ASC)
+            .named("ref_source_ref_id")
+            .unique()
+            .partial(PartialIndexFilter.of(Criteria.where("ref_id").exists(true))));
+    }
+
+    @ChangeSet(order = "02", author = "initiator", id = "02-addPropertySearchIndexes")
+    public void addPropertySearchIndexes(MongoTemplate mongoTemplate) {
+        IndexOperations indexOperations = mongoTemplate.indexOps(Property.class);
+        indexOperations.ensureIndex(new Index().on("city.zip_code", Sort.Direction.ASC).named("city_zip_code"));
+        indexOperations.ensureIndex(new Index().on("type", Sort.Direction.ASC).named("type"));
+        indexOperations.ensureIndex(new Index().on("transaction", Sort.Direction.ASC).named("transaction"));
+        indexOperations.ensureIndex(new Index().on("price", Sort.Direction.ASC).named("price"));
+        indexOperations.ensureIndex(new Index().on("created_date", Sort.Direction.DESC).named("created_date"));
+    }
+
+    @ChangeSet(order = "03", author = "initiator", id = "03-addPropertyRefreshIndex")
+    public void addPropertyRefreshIndex(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(Property.class).ensureIndex(new Index()
+            .on("next_refresh_at", Sort.Direction.ASC)
+            .named("next_refresh_at"));
+    }
+
+    /**
+     * The properties scraped before the refresh was scheduled are due now.
+     */
+    @ChangeSet(order = "04", author = "initiator", id = "04-scheduleExistingProperties")
+    public void scheduleExistingProperties(MongoTemplate mongoTemplate) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("next_refresh_at").exists(false)),
+            Update.update("next_refresh_at", Instant.now()), Property.class);
+    }
+}
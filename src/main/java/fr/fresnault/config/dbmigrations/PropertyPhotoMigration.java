@@ -0,0 +1,57 @@
+package fr.fresnault.config.dbmigrations;
+
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.PropertyPhoto;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the photos of the properties as keys instead of urls
+ */
+@ChangeLog(order = "005")
+public class PropertyPhotoMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * The photos whose urls do not follow the url template keep them.
+     */
+    @ChangeSet(order = "01", author = "initiator", id = "01-compactPropertyPhotos")
+    @SuppressWarnings("unchecked")
+    public void compactPropertyPhotos(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Property.class));
+        List<WriteModel<Document>> updates = new ArrayList<>(BATCH_SIZE);
+        for (Document property : collection.find(Filters.exists("photo.photo_url")).projection(Projections.include("photo"))) {
+            List<Document> photos = (List<Document>) property.get("photo");
+            for (Document photo : photos) {
+                String key = PropertyPhoto.toKey(photo.getString("photo_thumb_url"), photo.getString("photo_url"));
+                if (key != null) {
+                    photo.remove("photo_thumb_url");
+                    photo.remove("photo_url");
+                    photo.put("photo_key", key);
+                }
+            }
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", property.get("_id")), Updates.set("photo", photos)));
+            if (updates.size() == BATCH_SIZE) {
+                collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+                updates.clear();
+            }
+        }
+        if (!updates.isEmpty()) {
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        }
+    }
+}
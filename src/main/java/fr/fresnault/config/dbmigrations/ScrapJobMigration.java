@@ -0,0 +1,28 @@
+package fr.fresnault.config.dbmigrations;
+
+import fr.fresnault.domain.ScrapJob;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Creates the indexes of the scrap_job collection
+ */
+@ChangeLog(order = "007")
+public class ScrapJobMigration {
+
+    /**
+     * Removes the jobs once their expire_at date is past, which is the job
+     * retention after they end.
+     */
+    @ChangeSet(order = "01", author = "initiator", id = "01-addScrapJobExpiryIndex")
+    public void addScrapJobExpiryIndex(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(ScrapJob.class).ensureIndex(new Index()
+            .on("expire_at", Sort.Direction.ASC)
+            .named("expire_at")
+            .expire(0));
+    }
+}
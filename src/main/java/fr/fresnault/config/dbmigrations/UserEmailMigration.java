@@ -0,0 +1,33 @@
+package fr.fresnault.config.dbmigrations;
+
+import fr.fresnault.domain.User;
+
+import com.github.mongobee.changeset.ChangeLog;
+import com.github.mongobee.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Locale;
+
+/**
+ * Stores the lowercase email of the users, which they are looked up by
+ */
+@ChangeLog(order = "006")
+public class UserEmailMigration {
+
+    @ChangeSet(order = "01", author = "initiator", id = "01-addUserEmailLower")
+    public void addUserEmailLower(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+        for (Document user : collection.find(Filters.exists("email")).projection(Projections.include("email"))) {
+            String email = user.getString("email");
+            if (email != null) {
+                collection.updateOne(Filters.eq("_id", user.get("_id")),
+                    Updates.set("email_lower", email.toLowerCase(Locale.ENGLISH)));
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package fr.fresnault.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * An observation of a {@link PriceHistory} bucket, delta-encoded.
+ * <p>
+ * The price is the difference with the previous observation of the bucket
+ * (the first observation holds the price itself), the other values are only
+ * set when they changed. The field names are kept short since a bucket holds
+ * many observations.
+ */
+public class PriceChange implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Seconds since the start of the month of the bucket. */
+	@Field("t")
+	private int time;
+
+	/** Price difference, in cents. */
+	@Field("p")
+	private Long price;
+
+	@Field("la")
+	private BigDecimal livingArea;
+
+	@Field("sa")
+	private BigDecimal surfaceArea;
+
+	@Field("rc")
+	private Integer roomCount;
+
+	public int getTime() {
+		return time;
+	}
+
+	public PriceChange time(int time) {
+		this.time = time;
+		return this;
+	}
+
+	public void setTime(int time) {
+		this.time = time;
+	}
+
+	public Long getPrice() {
+		return price;
+	}
+
+	public PriceChange price(Long price) {
+		this.price = price;
+		return this;
+	}
+
+	public void setPrice(Long price) {
+		this.price = price;
+	}
+
+	public BigDecimal getLivingArea() {
+		return livingArea;
+	}
+
+	public PriceChange livingArea(BigDecimal livingArea) {
+		this.livingArea = livingArea;
+		return this;
+	}
+
+	public void setLivingArea(BigDecimal livingArea) {
+		this.livingArea = livingArea;
+	}
+
+	public BigDecimal getSurfaceArea() {
+		return surfaceArea;
+	}
+
+	public PriceChange surfaceArea(BigDecimal surfaceArea) {
+		this.surfaceArea = surfaceArea;
+		return this;
+	}
+
+	public void setSurfaceArea(BigDecimal surfaceArea) {
+		this.surfaceArea = surfaceArea;
+	}
+
+	public Integer getRoomCount() {
+		return roomCount;
+	}
+
+	public PriceChange roomCount(Integer roomCount) {
+		this.roomCount = roomCount;
+		return this;
+	}
+
+	public void setRoomCount(Integer roomCount) {
+		this.roomCount = roomCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PriceChange{" + "time=" + getTime() + ", price=" + getPrice() + ", livingArea=" + getLivingArea()
+				+ ", surfaceArea=" + getSurfaceArea() + ", roomCount=" + getRoomCount() + "}";
+	}
+}
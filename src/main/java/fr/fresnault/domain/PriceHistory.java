@@ -0,0 +1,179 @@
+package fr.fresnault.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import fr.fresnault.domain.enumeration.Source;
+
+/**
+ * The price and area history of an ad during a month.
+ * <p>
+ * One bucket per ad and per month holds all the changes observed during the
+ * month, delta-encoded, with the last values to compare the next scraps
+ * with.
+ */
+@Document(collection = "price_history")
+public class PriceHistory implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	private String id;
+
+	@Field("ref_source")
+	private Source refSource;
+
+	@Field("ref_id")
+	private String refId;
+
+	/** Month of the bucket, as yyyy-MM in UTC. */
+	@Field("month")
+	private String month;
+
+	@Field("count")
+	private int count;
+
+	/** In cents. */
+	@Field("last_price")
+	private Long lastPrice;
+
+	@Field("last_living_area")
+	private BigDecimal lastLivingArea;
+
+	@Field("last_surface_area")
+	private BigDecimal lastSurfaceArea;
+
+	@Field("last_room_count")
+	private Integer lastRoomCount;
+
+	@Field("changes")
+	private List<PriceChange> changes = new ArrayList<>();
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Source getRefSource() {
+		return refSource;
+	}
+
+	public PriceHistory refSource(Source refSource) {
+		this.refSource = refSource;
+		return this;
+	}
+
+	public void setRefSource(Source refSource) {
+		this.refSource = refSource;
+	}
+
+	public String getRefId() {
+		return refId;
+	}
+
+	public PriceHistory refId(String refId) {
+		this.refId = refId;
+		return this;
+	}
+
+	public void setRefId(String refId) {
+		this.refId = refId;
+	}
+
+	public String getMonth() {
+		return month;
+	}
+
+	public PriceHistory month(String month) {
+		this.month = month;
+		return this;
+	}
+
+	public void setMonth(String month) {
+		this.month = month;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public Long getLastPrice() {
+		return lastPrice;
+	}
+
+	public void setLastPrice(Long lastPrice) {
+		this.lastPrice = lastPrice;
+	}
+
+	public BigDecimal getLastLivingArea() {
+		return lastLivingArea;
+	}
+
+	public void setLastLivingArea(BigDecimal lastLivingArea) {
+		this.lastLivingArea = lastLivingArea;
+	}
+
+	public BigDecimal getLastSurfaceArea() {
+		return lastSurfaceArea;
+	}
+
+	public void setLastSurfaceArea(BigDecimal lastSurfaceArea) {
+		this.lastSurfaceArea = lastSurfaceArea;
+	}
+
+	public Integer getLastRoomCount() {
+		return lastRoomCount;
+	}
+
+	public void setLastRoomCount(Integer lastRoomCount) {
+		this.lastRoomCount = lastRoomCount;
+	}
+
+	public List<PriceChange> getChanges() {
+		return changes;
+	}
+
+	public void setChanges(List<PriceChange> changes) {
+		this.changes = changes;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		PriceHistory priceHistory = (PriceHistory) o;
+		if (priceHistory.getId() == null || getId() == null) {
+			return false;
+		}
+		return Objects.equals(getId(), priceHistory.getId());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(getId());
+	}
+
+	@Override
+	public String toString() {
+		return "PriceHistory{" + "id=" + getId() + ", refSource='" + getRefSource() + "'" + ", refId='" + getRefId()
+				+ "'" + ", month='" + getMonth() + "'" + ", count=" + getCount() + "}";
+	}
+}
@@ -76,6 +76,21 @@ public class Property implements Serializable {
 	@Field("photo")
 	private Set<PropertyPhoto> photos = new HashSet<>();
 
+	/** Fingerprint of the adview this property was scraped from. */
+	@Field("fingerprint")
+	private Long fingerprint;
+
+	@Field("next_refresh_at")
+	private Instant nextRefreshAt;
+
+	/** Current refresh interval of the ad, in seconds. */
+	@Field("refresh_interval")
+	private Long refreshInterval;
+
+	/** False once the ad is removed from the site, null or true while it is listed. */
+	@Field("active")
+	private Boolean active;
+
 	// jhipster-needle-entity-add-field - JHipster will add fields here, do not
 	// remove
 	public String getId() {
@@ -290,6 +305,59 @@ public class Property implements Serializable {
 	public void setPhotos(Set<PropertyPhoto> propertyPhotos) {
 		this.photos = propertyPhotos;
 	}
+
+	public Long getFingerprint() {
+		return fingerprint;
+	}
+
+	public Property fingerprint(Long fingerprint) {
+		this.fingerprint = fingerprint;
+		return this;
+	}
+
+	public void setFingerprint(Long fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	public Instant getNextRefreshAt() {
+		return nextRefreshAt;
+	}
+
+	public Property nextRefreshAt(Instant nextRefreshAt) {
+		this.nextRefreshAt = nextRefreshAt;
+		return this;
+	}
+
+	public void setNextRefreshAt(Instant nextRefreshAt) {
+		this.nextRefreshAt = nextRefreshAt;
+	}
+
+	public Long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public Property refreshInterval(Long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+		return this;
+	}
+
+	public void setRefreshInterval(Long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	public Boolean getActive() {
+		return active;
+	}
+
+	public Property active(Boolean active) {
+		this.active = active;
+		return this;
+	}
+
+	public void setActive(Boolean active) {
+		this.active = active;
+	}
+
 	// jhipster-needle-entity-add-getters-setters - JHipster will add getters
 	// and setters here, do not remove
 
@@ -6,19 +6,38 @@ import java.util.Objects;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * A PropertyPhoto.
+ * <p>
+ * The thumbnail and the large image of a Leboncoin photo only differ by the
+ * size segment of their url, "https://{host}.leboncoin.fr/ad-{size}/{name}":
+ * such a photo only stores its key, "{host}/{name}", and its urls are built
+ * back when read. Other urls are stored as they are. Setting one of the urls
+ * computes the key again with the other.
  */
 public class PropertyPhoto implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final String URL_PREFIX = "https://";
+
+	private static final String URL_DOMAIN = ".leboncoin.fr/ad-";
+
+	private static final String THUMB_SIZE = "thumb";
+
+	private static final String LARGE_SIZE = "large";
+
 	@Id
 	private String id;
 
 	@Field("photo_seq")
 	private Integer photoSeq;
 
+	@Field("photo_key")
+	private String photoKey;
+
 	@Field("photo_thumb_url")
 	private String photoThumbUrl;
 
@@ -48,35 +67,83 @@ public class PropertyPhoto implements Serializable {
 		this.photoSeq = photoSeq;
 	}
 
+	@JsonIgnore
+	public String getPhotoKey() {
+		return photoKey;
+	}
+
+	public void setPhotoKey(String photoKey) {
+		this.photoKey = photoKey;
+	}
+
+	/**
+	 * Sets the urls of the photo, only as a key when they follow the url
+	 * template.
+	 */
+	public PropertyPhoto urls(String photoThumbUrl, String photoUrl) {
+		String key = toKey(photoThumbUrl, photoUrl);
+		this.photoKey = key;
+		this.photoThumbUrl = key == null ? photoThumbUrl : null;
+		this.photoUrl = key == null ? photoUrl : null;
+		return this;
+	}
+
 	public String getPhotoThumbUrl() {
-		return photoThumbUrl;
+		return photoKey != null ? toUrl(photoKey, THUMB_SIZE) : photoThumbUrl;
 	}
 
 	public PropertyPhoto photoThumbUrl(String photoThumbUrl) {
-		this.photoThumbUrl = photoThumbUrl;
-		return this;
+		return urls(photoThumbUrl, getPhotoUrl());
 	}
 
 	public void setPhotoThumbUrl(String photoThumbUrl) {
-		this.photoThumbUrl = photoThumbUrl;
+		urls(photoThumbUrl, getPhotoUrl());
 	}
 
 	public String getPhotoUrl() {
-		return photoUrl;
+		return photoKey != null ? toUrl(photoKey, LARGE_SIZE) : photoUrl;
 	}
 
 	public PropertyPhoto photoUrl(String photoUrl) {
-		this.photoUrl = photoUrl;
-		return this;
+		return urls(getPhotoThumbUrl(), photoUrl);
 	}
 
 	public void setPhotoUrl(String photoUrl) {
-		this.photoUrl = photoUrl;
+		urls(getPhotoThumbUrl(), photoUrl);
 	}
 
 	// jhipster-needle-entity-add-getters-setters - JHipster will add getters
 	// and setters here, do not remove
 
+	/**
+	 * @return the key of the photo, or null if its urls do not follow the url
+	 *         template with the same host and name
+	 */
+	public static String toKey(String photoThumbUrl, String photoUrl) {
+		String key = toSizeKey(photoThumbUrl, THUMB_SIZE);
+		return key != null && key.equals(toSizeKey(photoUrl, LARGE_SIZE)) ? key : null;
+	}
+
+	private static String toSizeKey(String url, String size) {
+		if (url == null || !url.startsWith(URL_PREFIX)) {
+			return null;
+		}
+		int domain = url.indexOf(URL_DOMAIN);
+		String host = domain > 0 ? url.substring(URL_PREFIX.length(), domain) : "";
+		String sizeSegment = size + '/';
+		int name = domain + URL_DOMAIN.length() + sizeSegment.length();
+		if (host.isEmpty() || host.indexOf('/') >= 0 || !url.startsWith(sizeSegment, domain + URL_DOMAIN.length())
+				|| name == url.length() || url.indexOf('/', name) >= 0) {
+			return null;
+		}
+		return host + '/' + url.substring(name);
+	}
+
+	private static String toUrl(String key, String size) {
+		int name = key.indexOf('/');
+		return URL_PREFIX + key.substring(0, name) + URL_DOMAIN + size + '/' + key.substring(name + 1);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
@@ -99,7 +166,8 @@ public class PropertyPhoto implements Serializable {
 
 	@Override
 	public String toString() {
-		return "PropertyPhoto{" + "id=" + getId() + ", photoSeq=" + getPhotoSeq() + ", photoThumbUrl='"
+		return "PropertyPhoto{" + "id=" + getId() + ", photoSeq=" + getPhotoSeq() + ", photoKey='" + getPhotoKey()
+				+ "'" + ", photoThumbUrl='"
 				+ getPhotoThumbUrl() + "'" + ", photoUrl='" + getPhotoUrl() + "'" + "}";
 	}
 }
@@ -0,0 +1,172 @@
+package fr.fresnault.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import fr.fresnault.domain.enumeration.ScrapJobStatus;
+
+/**
+ * A scrap submitted through the API, shared by all the nodes so that any of
+ * them can answer its state.
+ * <p>
+ * A job is removed by its TTL index once its expiry date is past.
+ */
+@Document(collection = "scrap_job")
+public class ScrapJob implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Id
+	private String id;
+
+	@Field("url")
+	private String url;
+
+	@Field("status")
+	private ScrapJobStatus status;
+
+	@Field("property_id")
+	private String propertyId;
+
+	@Field("error")
+	private String error;
+
+	@Field("submitted_date")
+	private Instant submittedDate;
+
+	@Field("completed_date")
+	private Instant completedDate;
+
+	@Field("expire_at")
+	private Instant expireAt;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public ScrapJob url(String url) {
+		this.url = url;
+		return this;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public ScrapJobStatus getStatus() {
+		return status;
+	}
+
+	public ScrapJob status(ScrapJobStatus status) {
+		this.status = status;
+		return this;
+	}
+
+	public void setStatus(ScrapJobStatus status) {
+		this.status = status;
+	}
+
+	public String getPropertyId() {
+		return propertyId;
+	}
+
+	public ScrapJob propertyId(String propertyId) {
+		this.propertyId = propertyId;
+		return this;
+	}
+
+	public void setPropertyId(String propertyId) {
+		this.propertyId = propertyId;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public ScrapJob error(String error) {
+		this.error = error;
+		return this;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	public Instant getSubmittedDate() {
+		return submittedDate;
+	}
+
+	public ScrapJob submittedDate(Instant submittedDate) {
+		this.submittedDate = submittedDate;
+		return this;
+	}
+
+	public void setSubmittedDate(Instant submittedDate) {
+		this.submittedDate = submittedDate;
+	}
+
+	public Instant getCompletedDate() {
+		return completedDate;
+	}
+
+	public ScrapJob completedDate(Instant completedDate) {
+		this.completedDate = completedDate;
+		return this;
+	}
+
+	public void setCompletedDate(Instant completedDate) {
+		this.completedDate = completedDate;
+	}
+
+	public Instant getExpireAt() {
+		return expireAt;
+	}
+
+	public ScrapJob expireAt(Instant expireAt) {
+		this.expireAt = expireAt;
+		return this;
+	}
+
+	public void setExpireAt(Instant expireAt) {
+		this.expireAt = expireAt;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		ScrapJob scrapJob = (ScrapJob) o;
+		if (scrapJob.getId() == null || getId() == null) {
+			return false;
+		}
+		return Objects.equals(getId(), scrapJob.getId());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(getId());
+	}
+
+	@Override
+	public String toString() {
+		return "ScrapJob{" + "id=" + getId() + ", url='" + getUrl() + "'" + ", status='" + getStatus() + "'"
+				+ ", propertyId='" + getPropertyId() + "'" + "}";
+	}
+}
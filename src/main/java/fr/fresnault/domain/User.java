@@ -54,6 +54,11 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @Indexed
     private String email;
 
+    @JsonIgnore
+    @Indexed
+    @Field("email_lower")
+    private String emailLower;
+
     private boolean activated = false;
 
     @Size(min = 2, max = 6)
@@ -125,8 +130,14 @@ public class User extends AbstractAuditingEntity implements Serializable {
         return email;
     }
 
+    // Lowercase the email in a second field, to look it up without a case insensitive regex
     public void setEmail(String email) {
         this.email = email;
+        this.emailLower = StringUtils.lowerCase(email, Locale.ENGLISH);
+    }
+
+    public String getEmailLower() {
+        return emailLower;
     }
 
     public String getImageUrl() {
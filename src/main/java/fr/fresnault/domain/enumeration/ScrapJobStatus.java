@@ -0,0 +1,8 @@
+package fr.fresnault.domain.enumeration;
+
+/**
+ * The ScrapJobStatus enumeration.
+ */
+public enum ScrapJobStatus {
+	PENDING, DONE, FAILED
+}
@@ -1,10 +1,13 @@
 package fr.fresnault.repository;
 
 import fr.fresnault.domain.City;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 
 /**
  * Spring Data MongoDB repository for the City entity.
@@ -13,4 +16,13 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface CityRepository extends MongoRepository<City, String> {
 
+    String CITY_BY_ZIP_CODE_CACHE = "cityByZipCode";
+
+    /**
+     * Finds the cities of a zip code, on the (zip_code, name) index, through
+     * the city by zip code cache.
+     */
+    @Cacheable(cacheNames = CITY_BY_ZIP_CODE_CACHE)
+    List<City> findAllByZipCode(String zipCode);
+
 }
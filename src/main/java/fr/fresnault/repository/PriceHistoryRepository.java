@@ -0,0 +1,24 @@
+package fr.fresnault.repository;
+
+import fr.fresnault.domain.PriceHistory;
+import fr.fresnault.domain.enumeration.Source;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Spring Data MongoDB repository for the PriceHistory entity.
+ */
+@Repository
+public interface PriceHistoryRepository extends MongoRepository<PriceHistory, String> {
+
+    /**
+     * Finds all the buckets of an ad, oldest first.
+     */
+    List<PriceHistory> findAllByRefSourceAndRefIdOrderByMonthAsc(Source refSource, String refId);
+
+    List<PriceHistory> findAllByRefSourceAndMonthAndRefIdIn(Source refSource, String month, Collection<String> refIds);
+}
@@ -1,16 +1,49 @@
 package fr.fresnault.repository;
 
 import fr.fresnault.domain.Property;
+import fr.fresnault.domain.enumeration.Source;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+import java.util.stream.Stream;
+
 
 /**
  * Spring Data MongoDB repository for the Property entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface PropertyRepository extends MongoRepository<Property, String> {
+public interface PropertyRepository extends MongoRepository<Property, String>, PropertyRepositoryCustom {
+
+    String PROPERTY_BY_ID_CACHE = "propertyById";
+
+    /**
+     * Reads the property through the property by id cache. The written
+     * properties are evicted from it on every node, see
+     * {@link fr.fresnault.service.CacheInvalidationService}.
+     */
+    @Override
+    @Cacheable(cacheNames = PROPERTY_BY_ID_CACHE, unless = "#result == null")
+    Optional<Property> findById(String id);
+
+    /**
+     * Finds the property of an ad, on the unique (ref_source, ref_id) index.
+     */
+    Optional<Property> findOneByRefSourceAndRefId(Source refSource, String refId);
+
+    /**
+     * Finds the properties of a city, on the city._id index.
+     */
+    Page<Property> findAllByCityId(String cityId, Pageable pageable);
 
+    /**
+     * Streams all the properties from a database cursor. The stream must be
+     * closed to release the cursor.
+     */
+    Stream<Property> streamAllBy();
 }
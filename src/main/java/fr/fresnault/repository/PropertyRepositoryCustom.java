@@ -0,0 +1,35 @@
+package fr.fresnault.repository;
+
+import java.util.List;
+
+import com.mongodb.bulk.BulkWriteResult;
+
+import fr.fresnault.domain.Property;
+
+/**
+ * Custom operations of {@link PropertyRepository}.
+ */
+public interface PropertyRepositoryCustom {
+
+	/**
+	 * Inserts or updates the properties with a single unordered bulk write.
+	 * <p>
+	 * A property is matched on its id when it has one, on its
+	 * {@code (ref_source, ref_id)} otherwise. Only the scraped fields that
+	 * differ from the stored document are written: the other fields of a
+	 * stored property are kept. The ids of the matched and
+	 * inserted properties are set back on them.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a property has neither id nor reference
+	 */
+	BulkWriteResult upsertAll(List<Property> properties);
+
+	/**
+	 * Writes the status of the stored properties, their active flag, refresh
+	 * interval and next refresh date, and nothing else, with a single
+	 * unordered bulk write.
+	 */
+	BulkWriteResult updateStatusAll(List<Property> properties);
+
+}
@@ -0,0 +1,234 @@
+package fr.fresnault.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.enumeration.Type;
+
+/**
+ * Implementation of {@link PropertyRepositoryCustom} on the {@link MongoTemplate}.
+ */
+public class PropertyRepositoryImpl implements PropertyRepositoryCustom {
+
+	private static final String ID = "_id";
+
+	private static final String REF_SOURCE = "ref_source";
+
+	private static final String REF_ID = "ref_id";
+
+	private static final String TYPE = "type";
+
+	private static final String LIVING_AREA = "living_area";
+
+	private static final String SURFACE_AREA = "surface_area";
+
+	/**
+	 * The fields a scrap sets, null included, besides the area: the living
+	 * area of a land is not scraped, nor the surface area of the other types.
+	 * The other fields, as the bedroom count or the manually edited ones, are
+	 * never written by a re-scrap.
+	 */
+	private static final List<String> SCRAPED_FIELDS = Collections.unmodifiableList(Arrays.asList(REF_SOURCE, REF_ID,
+			"name", "transaction", TYPE, "description", "created_date", "price", "room_count", "url", "city", "photo",
+			"fingerprint", "next_refresh_at", "refresh_interval", "active"));
+
+	private final MongoTemplate mongoTemplate;
+
+	public PropertyRepositoryImpl(MongoTemplate mongoTemplate) {
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The stored versions of the properties are read first, with a single
+	 * query: a stored property is only updated with the scraped fields that
+	 * changed ($set, or $unset when the scrap found no value), and not written
+	 * at all if none did.
+	 */
+	@Override
+	public BulkWriteResult upsertAll(List<Property> properties) {
+		Map<String, Document> stored = findStored(properties);
+
+		BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Property.class);
+		List<Property> written = new ArrayList<>(properties.size());
+		int unchanged = 0;
+		for (Property property : properties) {
+			Document document = new Document();
+			mongoTemplate.getConverter().write(property, document);
+			Document current = getStored(stored, property);
+			if (current == null) {
+				operations.upsert(getKey(property), Update.fromDocument(document, ID));
+				written.add(property);
+				continue;
+			}
+			property.setId(toString(current.get(ID)));
+			Update update = diff(current, document);
+			if (update.getUpdateObject().isEmpty()) {
+				unchanged++;
+			} else {
+				operations.updateOne(Query.query(Criteria.where(ID).is(current.get(ID))), update);
+				written.add(property);
+			}
+		}
+		if (written.isEmpty()) {
+			return BulkWriteResult.acknowledged(0, unchanged, 0, 0, Collections.emptyList());
+		}
+
+		BulkWriteResult result = operations.execute();
+		for (BulkWriteUpsert upsert : result.getUpserts()) {
+			written.get(upsert.getIndex()).setId(toString(upsert.getId()));
+		}
+		return BulkWriteResult.acknowledged(result.getInsertedCount(), result.getMatchedCount() + unchanged,
+				result.getDeletedCount(), result.getModifiedCount(), result.getUpserts());
+	}
+
+	@Override
+	public BulkWriteResult updateStatusAll(List<Property> properties) {
+		if (properties.isEmpty()) {
+			return BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList());
+		}
+		BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, Property.class);
+		for (Property property : properties) {
+			operations.updateOne(Query.query(Criteria.where("id").is(property.getId())),
+					Update.update("active", property.getActive()).set("nextRefreshAt", property.getNextRefreshAt())
+							.set("refreshInterval", property.getRefreshInterval()));
+		}
+		return operations.execute();
+	}
+
+	/**
+	 * @return the stored documents of the properties, by id and by
+	 *         "ref_source:ref_id"
+	 */
+	private Map<String, Document> findStored(List<Property> properties) {
+		List<Object> ids = new ArrayList<>();
+		Map<String, List<String>> refIdsBySource = new HashMap<>();
+		for (Property property : properties) {
+			if (property.getId() != null) {
+				ids.add(ObjectId.isValid(property.getId()) ? new ObjectId(property.getId()) : property.getId());
+			} else if (property.getRefSource() != null && property.getRefId() != null) {
+				refIdsBySource.computeIfAbsent(property.getRefSource().name(), source -> new ArrayList<>())
+						.add(property.getRefId());
+			}
+		}
+		List<Criteria> keys = new ArrayList<>();
+		if (!ids.isEmpty()) {
+			keys.add(Criteria.where(ID).in(ids));
+		}
+		refIdsBySource
+				.forEach((source, refIds) -> keys.add(Criteria.where(REF_SOURCE).is(source).and(REF_ID).in(refIds)));
+		if (keys.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		Map<String, Document> stored = new HashMap<>();
+		String collection = mongoTemplate.getCollectionName(Property.class);
+		Query query = Query.query(new Criteria().orOperator(keys.toArray(new Criteria[keys.size()])));
+		for (Document document : mongoTemplate.find(query, Document.class, collection)) {
+			stored.put(toString(document.get(ID)), document);
+			if (document.get(REF_SOURCE) != null && document.get(REF_ID) != null) {
+				stored.put(document.get(REF_SOURCE) + ":" + document.get(REF_ID), document);
+			}
+		}
+		return stored;
+	}
+
+	private Document getStored(Map<String, Document> stored, Property property) {
+		if (property.getId() != null) {
+			return stored.get(property.getId());
+		}
+		if (property.getRefSource() == null || property.getRefId() == null) {
+			return null;
+		}
+		return stored.get(property.getRefSource().name() + ":" + property.getRefId());
+	}
+
+	/**
+	 * @param document
+	 *            the scraped property, without its null fields
+	 * @return an update setting the scraped fields of the document that
+	 *         differ from the current one, and unsetting the scraped fields it
+	 *         lacks
+	 */
+	static Update diff(Document current, Document document) {
+		Update update = new Update();
+		for (String field : getScrapedFields(document)) {
+			Object value = document.get(field);
+			if (value == null) {
+				if (current.containsKey(field)) {
+					update.unset(field);
+				}
+			} else if (!same(current.get(field), value)) {
+				update.set(field, value);
+			}
+		}
+		return update;
+	}
+
+	private static List<String> getScrapedFields(Document document) {
+		List<String> fields = new ArrayList<>(SCRAPED_FIELDS.size() + 1);
+		fields.addAll(SCRAPED_FIELDS);
+		fields.add(Type.LAND.name().equals(document.get(TYPE)) ? SURFACE_AREA : LIVING_AREA);
+		return fields;
+	}
+
+	/**
+	 * Compares two field values, arrays as sets: the photos are written from
+	 * a set, in no particular order.
+	 */
+	private static boolean same(Object current, Object value) {
+		if (current instanceof Collection && value instanceof Collection) {
+			Collection<?> currentValues = (Collection<?>) current;
+			Collection<?> values = (Collection<?>) value;
+			if (currentValues.size() != values.size()) {
+				return false;
+			}
+			Set<Object> valueSet = new HashSet<>(values);
+			return valueSet.size() == values.size() && valueSet.containsAll(currentValues);
+		}
+		return Objects.equals(current, value);
+	}
+
+	private Query getKey(Property property) {
+		if (property.getId() != null) {
+			return Query.query(Criteria.where("id").is(property.getId()));
+		}
+		if (property.getRefSource() == null || property.getRefId() == null) {
+			throw new IllegalArgumentException("Property " + property.getUrl() + " has neither id nor reference");
+		}
+		return Query.query(
+				Criteria.where("refSource").is(property.getRefSource()).and("refId").is(property.getRefId()));
+	}
+
+	private String toString(Object id) {
+		if (id instanceof BsonValue) {
+			BsonValue value = (BsonValue) id;
+			return value.isObjectId() ? value.asObjectId().getValue().toHexString() : value.asString().getValue();
+		}
+		return id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id);
+	}
+
+}
@@ -0,0 +1,13 @@
+package fr.fresnault.repository;
+
+import fr.fresnault.domain.ScrapJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+
+/**
+ * Spring Data MongoDB repository for the ScrapJob entity.
+ */
+@Repository
+public interface ScrapJobRepository extends MongoRepository<ScrapJob, String> {
+}
@@ -2,9 +2,14 @@ package fr.fresnault.security.jwt;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +33,18 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    public static final String VERIFIED_TOKENS_CACHE = "verifiedTokens";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
     private Key key;
 
     private long tokenValidityInMilliseconds;
@@ -36,8 +53,11 @@ public class TokenProvider {
 
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final Cache<Object, Object> verifiedTokens;
+
+    public TokenProvider(JHipsterProperties jHipsterProperties, CacheManager cacheManager) {
         this.jHipsterProperties = jHipsterProperties;
+        this.verifiedTokens = cacheManager.getCache(VERIFIED_TOKENS_CACHE);
     }
 
     @PostConstruct
@@ -97,23 +117,85 @@ public class TokenProvider {
         return new UsernamePasswordAuthenticationToken(principal, token, authorities);
     }
 
+    /**
+     * Validates the token and builds its authentication with a single parse.
+     * <p>
+     * The principal of a verified token is kept in the verified tokens cache
+     * until the token expires, under the SHA-256 of the token: the next
+     * requests with the same token skip the parse and the signature check.
+     *
+     * @return the authentication of the token, empty if it is not valid
+     */
+    public Optional<Authentication> authenticate(String authToken) {
+        String tokenHash = hash(authToken);
+        VerifiedToken verifiedToken = (VerifiedToken) verifiedTokens.get(tokenHash);
+        if (verifiedToken == null || verifiedToken.isExpired(Instant.now())) {
+            verifiedToken = verify(authToken);
+            if (verifiedToken == null) {
+                return Optional.empty();
+            }
+            verifiedTokens.put(tokenHash, verifiedToken);
+        }
+        User principal = verifiedToken.getPrincipal();
+        return Optional.of(new UsernamePasswordAuthenticationToken(principal, authToken, principal.getAuthorities()));
+    }
+
+    /**
+     * @return the principal of the token, or null if it is not valid or has
+     *         no expiration
+     */
+    private VerifiedToken verify(String authToken) {
+        Claims claims;
+        try {
+            claims = Jwts.parser().setSigningKey(key).parseClaimsJws(authToken).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            logInvalidToken(e);
+            return null;
+        }
+        if (claims.getExpiration() == null) {
+            log.info("JWT token without expiration.");
+            return null;
+        }
+        Collection<? extends GrantedAuthority> authorities =
+            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+        return new VerifiedToken(new User(claims.getSubject(), "", authorities), claims.getExpiration().toInstant());
+    }
+
+    private String hash(String authToken) {
+        byte[] digest = SHA_256.get().digest(authToken.getBytes(StandardCharsets.US_ASCII));
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
     public boolean validateToken(String authToken) {
         try {
             Jwts.parser().setSigningKey(key).parseClaimsJws(authToken);
             return true;
-        } catch (io.jsonwebtoken.security.SecurityException | MalformedJwtException e) {
+        } catch (JwtException | IllegalArgumentException e) {
+            logInvalidToken(e);
+        }
+        return false;
+    }
+
+    private void logInvalidToken(RuntimeException e) {
+        if (e instanceof io.jsonwebtoken.security.SecurityException || e instanceof MalformedJwtException) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
-        } catch (ExpiredJwtException e) {
+        } else if (e instanceof ExpiredJwtException) {
             log.info("Expired JWT token.");
             log.trace("Expired JWT token trace: {}", e);
-        } catch (UnsupportedJwtException e) {
+        } else if (e instanceof UnsupportedJwtException) {
             log.info("Unsupported JWT token.");
             log.trace("Unsupported JWT token trace: {}", e);
-        } catch (IllegalArgumentException e) {
+        } else {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
-        return false;
     }
 }
@@ -0,0 +1,33 @@
+package fr.fresnault.security.jwt;
+
+import java.time.Instant;
+
+import org.springframework.security.core.userdetails.User;
+
+/**
+ * The principal of a token whose signature was verified, until the token
+ * expires.
+ */
+public class VerifiedToken {
+
+    private final User principal;
+
+    private final Instant expiration;
+
+    public VerifiedToken(User principal, Instant expiration) {
+        this.principal = principal;
+        this.expiration = expiration;
+    }
+
+    public User getPrincipal() {
+        return principal;
+    }
+
+    public Instant getExpiration() {
+        return expiration;
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiration.isAfter(now);
+    }
+}
@@ -0,0 +1,127 @@
+package fr.fresnault.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import fr.fresnault.config.ConfigurationRabbitMQ;
+import fr.fresnault.domain.City;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.User;
+import fr.fresnault.repository.CityRepository;
+import fr.fresnault.repository.PropertyRepository;
+import fr.fresnault.repository.UserRepository;
+import fr.fresnault.service.dto.CacheInvalidationDTO;
+
+/**
+ * Evicts the changed entities from the local caches of every node.
+ * <p>
+ * An invalidation is applied to the caches of this node first, then
+ * published on the cache invalidation fanout, from which every node,
+ * including this one, evicts the same entities. Only the entity type and the
+ * ids travel: the next read on each node goes to the database.
+ * <p>
+ * The cities are cached by zip code, so their invalidations carry zip codes.
+ * The users are cached by login and by lowercase email, and their
+ * invalidations carry both.
+ * <p>
+ * Other local copies of the entities register a listener, called with the
+ * ids of each invalidation of their type, or an empty list when all of them
+ * are invalidated.
+ */
+@Service
+public class CacheInvalidationService {
+
+	private final Logger log = LoggerFactory.getLogger(CacheInvalidationService.class);
+
+	private final RabbitTemplate rabbitTemplate;
+
+	private final Map<String, List<Cache>> cachesByType = new HashMap<>();
+
+	private final Map<String, List<Consumer<List<String>>>> listenersByType = new ConcurrentHashMap<>();
+
+	public CacheInvalidationService(CacheManager cacheManager, RabbitTemplate rabbitTemplate) {
+		this.rabbitTemplate = rabbitTemplate;
+		cachesByType.put(Property.class.getSimpleName(),
+				Collections.singletonList(cacheManager.getCache(PropertyRepository.PROPERTY_BY_ID_CACHE)));
+		cachesByType.put(City.class.getSimpleName(),
+				Collections.singletonList(cacheManager.getCache(CityRepository.CITY_BY_ZIP_CODE_CACHE)));
+		cachesByType.put(User.class.getSimpleName(), Arrays.asList(
+				cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE),
+				cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)));
+	}
+
+	/**
+	 * Registers a listener of the invalidations of a type, on this node.
+	 */
+	public void addListener(Class<?> type, Consumer<List<String>> listener) {
+		listenersByType.computeIfAbsent(type.getSimpleName(), name -> new CopyOnWriteArrayList<>()).add(listener);
+	}
+
+	public void invalidate(Class<?> type, String id) {
+		invalidate(type, Collections.singletonList(id));
+	}
+
+	/**
+	 * Evicts the entities from the caches of this node, and has the other
+	 * nodes evict them.
+	 */
+	public void invalidate(Class<?> type, Collection<String> ids) {
+		if (!ids.isEmpty()) {
+			publish(new CacheInvalidationDTO(type.getSimpleName(), new ArrayList<>(ids)));
+		}
+	}
+
+	/**
+	 * Clears the caches of the type on every node.
+	 */
+	public void invalidateAll(Class<?> type) {
+		publish(new CacheInvalidationDTO(type.getSimpleName(), Collections.emptyList()));
+	}
+
+	private void publish(CacheInvalidationDTO invalidation) {
+		evict(invalidation);
+		try {
+			rabbitTemplate.convertAndSend(ConfigurationRabbitMQ.CACHE_EXCHANGE_NAME, "", invalidation);
+		} catch (AmqpException e) {
+			log.warn("Cache invalidation {} could not be published: {}", invalidation, e.toString());
+		}
+	}
+
+	@RabbitListener(queues = "#{cacheInvalidationQueue.name}")
+	public void receive(CacheInvalidationDTO invalidation) {
+		log.debug("Received cache invalidation {}", invalidation);
+		evict(invalidation);
+	}
+
+	private void evict(CacheInvalidationDTO invalidation) {
+		for (Cache cache : cachesByType.getOrDefault(invalidation.getType(), Collections.emptyList())) {
+			if (invalidation.getIds().isEmpty()) {
+				cache.clear();
+			} else {
+				invalidation.getIds().forEach(cache::evict);
+			}
+		}
+		for (Consumer<List<String>> listener : listenersByType.getOrDefault(invalidation.getType(),
+				Collections.emptyList())) {
+			listener.accept(invalidation.getIds());
+		}
+	}
+
+}
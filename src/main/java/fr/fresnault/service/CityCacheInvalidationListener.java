@@ -0,0 +1,34 @@
+package fr.fresnault.service;
+
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import fr.fresnault.domain.City;
+
+/**
+ * Invalidates the cached cities on every node when a city is saved or
+ * deleted through the repository. A delete only tells the id of the city,
+ * not its zip code, so it clears the whole cache.
+ */
+@Component
+public class CityCacheInvalidationListener extends AbstractMongoEventListener<City> {
+
+	private final CacheInvalidationService cacheInvalidationService;
+
+	public CityCacheInvalidationListener(CacheInvalidationService cacheInvalidationService) {
+		this.cacheInvalidationService = cacheInvalidationService;
+	}
+
+	@Override
+	public void onAfterSave(AfterSaveEvent<City> event) {
+		cacheInvalidationService.invalidate(City.class, event.getSource().getZipCode());
+	}
+
+	@Override
+	public void onAfterDelete(AfterDeleteEvent<City> event) {
+		cacheInvalidationService.invalidateAll(City.class);
+	}
+
+}
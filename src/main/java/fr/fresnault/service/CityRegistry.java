@@ -0,0 +1,158 @@
+package fr.fresnault.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import fr.fresnault.domain.City;
+import fr.fresnault.domain.Property;
+import fr.fresnault.repository.CityRepository;
+
+/**
+ * Canonical instances of the cities, one per (name, zip code).
+ * <p>
+ * The registry is warmed with the city collection at startup. A city it
+ * does not know yet is read from the collection, or inserted on the unique
+ * (zip_code, name) index so that concurrent nodes agree on its id. The
+ * properties then share the instance of their city, and embed its id.
+ * <p>
+ * Only an insert invalidates the cities of its zip code, on every node: the
+ * registries then read the cities of that zip code again, so that a city
+ * created, renamed or deleted elsewhere is known to all of them.
+ */
+@Component
+public class CityRegistry {
+
+	private final Logger log = LoggerFactory.getLogger(CityRegistry.class);
+
+	private final CityRepository cityRepository;
+
+	private final MongoTemplate mongoTemplate;
+
+	/** The cities by name, by zip code. */
+	private final ConcurrentMap<String, ConcurrentMap<String, City>> cities = new ConcurrentHashMap<>();
+
+	public CityRegistry(CityRepository cityRepository, MongoTemplate mongoTemplate,
+			CacheInvalidationService cacheInvalidationService) {
+		this.cityRepository = cityRepository;
+		this.mongoTemplate = mongoTemplate;
+		cacheInvalidationService.addListener(City.class, this::refresh);
+	}
+
+	@PostConstruct
+	public void warm() {
+		Map<String, ConcurrentMap<String, City>> citiesByZipCode = new HashMap<>();
+		cityRepository.findAll().forEach(city -> citiesByZipCode
+				.computeIfAbsent(getKey(city.getZipCode()), key -> new ConcurrentHashMap<>())
+				.putIfAbsent(getKey(city.getName()), city));
+		cities.keySet().retainAll(citiesByZipCode.keySet());
+		cities.putAll(citiesByZipCode);
+		log.info("City registry warmed with the cities of {} zip codes", cities.size());
+	}
+
+	/**
+	 * @return the canonical city, created if it is not known yet
+	 */
+	public City getCity(String name, String zipCode) {
+		String key = getKey(name);
+		City city = getCities(zipCode).get(key);
+		if (city != null) {
+			return city;
+		}
+		// Looked up out of the map, so that the other cities are not blocked meanwhile
+		city = create(name, zipCode);
+		City registered = getCities(zipCode).putIfAbsent(key, city);
+		return registered != null ? registered : city;
+	}
+
+	/**
+	 * Replaces the cities of the properties by their canonical instances.
+	 * Cities without name nor zip code are left as they are.
+	 */
+	public void canonicalize(Collection<Property> properties) {
+		for (Property property : properties) {
+			City city = property.getCity();
+			if (city != null && (hasText(city.getName()) || hasText(city.getZipCode()))) {
+				property.setCity(getCity(city.getName(), city.getZipCode()));
+			}
+		}
+	}
+
+	/**
+	 * Reads the cities of the invalidated zip codes again, or all of them when
+	 * none is given.
+	 */
+	private void refresh(List<String> zipCodes) {
+		if (zipCodes.isEmpty()) {
+			warm();
+			return;
+		}
+		for (String zipCode : zipCodes) {
+			ConcurrentMap<String, City> zipCodeCities = new ConcurrentHashMap<>();
+			cityRepository.findAllByZipCode(zipCode)
+					.forEach(city -> zipCodeCities.putIfAbsent(getKey(city.getName()), city));
+			if (zipCodeCities.isEmpty()) {
+				cities.remove(getKey(zipCode));
+			} else {
+				cities.put(getKey(zipCode), zipCodeCities);
+			}
+		}
+	}
+
+	/**
+	 * @return the city, inserted if it does not exist. The insert is
+	 *         published by {@link CityCacheInvalidationListener}. When another
+	 *         node inserts it at the same time, one of the inserts fails on the
+	 *         unique index, and the city inserted by the other is read.
+	 */
+	private City create(String name, String zipCode) {
+		Query query = Query.query(Criteria.where("zipCode").is(zipCode).and("name").is(name));
+		City city = mongoTemplate.findOne(query, City.class);
+		if (city != null) {
+			return city;
+		}
+		city = new City();
+		city.setName(name);
+		city.setZipCode(zipCode);
+		try {
+			mongoTemplate.insert(city);
+		} catch (DuplicateKeyException e) {
+			city = mongoTemplate.findOne(query, City.class);
+			if (city == null) {
+				throw e;
+			}
+			return city;
+		}
+		log.debug("Registered city {}", city);
+		return city;
+	}
+
+	private ConcurrentMap<String, City> getCities(String zipCode) {
+		return cities.computeIfAbsent(getKey(zipCode), key -> new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * @return the key of a name or zip code, which may be null
+	 */
+	private String getKey(String value) {
+		return String.valueOf(value);
+	}
+
+	private boolean hasText(String value) {
+		return value != null && !value.isEmpty();
+	}
+
+}
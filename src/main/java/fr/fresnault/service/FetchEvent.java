@@ -0,0 +1,32 @@
+package fr.fresnault.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the fetch of the page of an ad, from its first
+ * attempt to the page received.
+ */
+@Name("fr.fresnault.Fetch")
+@Label("Fetch")
+@Category({ "Leboncoin", "Scrap" })
+@Description("Fetch of the page of an ad, retries included")
+class FetchEvent extends jdk.jfr.Event {
+
+	@Label("Host")
+	String host;
+
+	@Label("Status")
+	int status;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Attempts")
+	int attempts;
+
+}
@@ -0,0 +1,27 @@
+package fr.fresnault.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the scrap of a fetched page: the extraction of the
+ * adview, its fingerprint and, when it changed, its mapping.
+ */
+@Name("fr.fresnault.Parse")
+@Label("Parse")
+@Category({ "Leboncoin", "Scrap" })
+@Description("Parse of the page of an ad")
+class ParseEvent extends jdk.jfr.Event {
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Field Count")
+	@Description("Attributes of the adview mapped, 0 when the ad did not change")
+	int fieldCount;
+
+}
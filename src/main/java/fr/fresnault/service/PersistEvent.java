@@ -0,0 +1,28 @@
+package fr.fresnault.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the write of a property, from its queueing to the
+ * end of the bulk write of its batch.
+ */
+@Name("fr.fresnault.Persist")
+@Label("Persist")
+@Category({ "Leboncoin", "Scrap" })
+@Description("Write of a property, waiting for its batch included")
+class PersistEvent extends jdk.jfr.Event {
+
+	@Label("Write Type")
+	@Description("UPSERT of the whole property, or STATUS of its refresh and removal only")
+	String writeType;
+
+	@Label("Batch Size")
+	int batchSize;
+
+	@Label("Success")
+	boolean success;
+
+}
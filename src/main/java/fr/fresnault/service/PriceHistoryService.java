@@ -0,0 +1,257 @@
+package fr.fresnault.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.BulkWriteError;
+
+import fr.fresnault.domain.PriceChange;
+import fr.fresnault.domain.PriceHistory;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.enumeration.Source;
+import fr.fresnault.repository.PriceHistoryRepository;
+import fr.fresnault.service.dto.PricePointDTO;
+
+/**
+ * Records the price and area changes of the ads in monthly buckets, and
+ * rebuilds their history.
+ */
+@Service
+public class PriceHistoryService {
+
+	private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+	private static final int DUPLICATE_KEY = 11000;
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	private final Logger log = LoggerFactory.getLogger(PriceHistoryService.class);
+
+	private final PriceHistoryRepository priceHistoryRepository;
+
+	private final MongoTemplate mongoTemplate;
+
+	public PriceHistoryService(PriceHistoryRepository priceHistoryRepository, MongoTemplate mongoTemplate) {
+		this.priceHistoryRepository = priceHistoryRepository;
+		this.mongoTemplate = mongoTemplate;
+	}
+
+	/**
+	 * Appends the values of the properties that changed since their last
+	 * observation to the buckets of the current month, with one read and one
+	 * bulk write.
+	 * <p>
+	 * The first bucket of a month is upserted on its (ref_source, ref_id,
+	 * month) key, so that the nodes observing the same ad do not collide on
+	 * its creation. When the upserts race anyway, the loser keeps the bucket
+	 * of the winner, and its change is recorded at the next observation.
+	 * <p>
+	 * The changes are appended only if the last price of the bucket is still
+	 * the one its delta was computed from. The changes that lost a race are
+	 * retried on a fresh read of their buckets.
+	 */
+	public void record(List<Property> properties) {
+		record(properties, 1);
+	}
+
+	private void record(Collection<Property> properties, int attempt) {
+		Instant now = Instant.now();
+		YearMonth yearMonth = YearMonth.from(now.atOffset(ZoneOffset.UTC));
+		String month = yearMonth.format(MONTH_FORMAT);
+		int time = (int) (now.getEpochSecond() - yearMonth.atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC));
+
+		Map<Source, Map<String, Property>> propertiesBySource = new EnumMap<>(Source.class);
+		for (Property property : properties) {
+			if (property.getRefSource() != null && property.getRefId() != null) {
+				propertiesBySource.computeIfAbsent(property.getRefSource(), source -> new LinkedHashMap<>())
+						.put(property.getRefId(), property);
+			}
+		}
+
+		BulkOperations inserts = mongoTemplate.bulkOps(BulkMode.UNORDERED, PriceHistory.class);
+		BulkOperations appends = mongoTemplate.bulkOps(BulkMode.UNORDERED, PriceHistory.class);
+		int insertCount = 0;
+		List<Property> appended = new ArrayList<>();
+		for (Map.Entry<Source, Map<String, Property>> entry : propertiesBySource.entrySet()) {
+			Map<String, PriceHistory> buckets = new LinkedHashMap<>();
+			priceHistoryRepository
+					.findAllByRefSourceAndMonthAndRefIdIn(entry.getKey(), month, entry.getValue().keySet())
+					.forEach(bucket -> buckets.put(bucket.getRefId(), bucket));
+
+			for (Property property : entry.getValue().values()) {
+				PriceHistory bucket = buckets.get(property.getRefId());
+				if (bucket == null) {
+					insertBucket(inserts, newBucket(property, month, time));
+					insertCount++;
+				} else if (appendChange(appends, bucket, property, time)) {
+					appended.add(property);
+				}
+			}
+		}
+		if (insertCount > 0) {
+			try {
+				inserts.execute();
+			} catch (BulkOperationException e) {
+				// The bulk is unordered, the other changes were written
+				for (BulkWriteError error : e.getErrors()) {
+					if (error.getCode() != DUPLICATE_KEY) {
+						throw e;
+					}
+				}
+				log.debug("{} price history buckets were created concurrently", e.getErrors().size());
+			}
+		}
+		if (!appended.isEmpty()) {
+			int lost = appended.size() - appends.execute().getMatchedCount();
+			if (lost > 0 && attempt < MAX_ATTEMPTS) {
+				// The appended changes are no longer changes on a fresh read
+				log.debug("Retrying {} price history changes written concurrently", lost);
+				record(appended, attempt + 1);
+			} else if (lost > 0) {
+				log.warn("Lost {} price history changes written concurrently", lost);
+			}
+		}
+		if (insertCount > 0 || !appended.isEmpty()) {
+			log.debug("Recorded {} price history changes", insertCount + appended.size());
+		}
+	}
+
+	/**
+	 * @return the history of an ad, oldest first, read in one query
+	 */
+	public List<PricePointDTO> getHistory(Source refSource, String refId) {
+		List<PricePointDTO> history = new ArrayList<>();
+		for (PriceHistory bucket : priceHistoryRepository.findAllByRefSourceAndRefIdOrderByMonthAsc(refSource,
+				refId)) {
+			Instant start = YearMonth.parse(bucket.getMonth(), MONTH_FORMAT).atDay(1).atStartOfDay()
+					.toInstant(ZoneOffset.UTC);
+			Long price = null;
+			BigDecimal livingArea = null;
+			BigDecimal surfaceArea = null;
+			Integer roomCount = null;
+			for (PriceChange change : bucket.getChanges()) {
+				if (change.getPrice() != null) {
+					price = price == null ? change.getPrice() : price + change.getPrice();
+				}
+				livingArea = change.getLivingArea() != null ? change.getLivingArea() : livingArea;
+				surfaceArea = change.getSurfaceArea() != null ? change.getSurfaceArea() : surfaceArea;
+				roomCount = change.getRoomCount() != null ? change.getRoomCount() : roomCount;
+				history.add(new PricePointDTO(start.plusSeconds(change.getTime()), toEuros(price), livingArea,
+						surfaceArea, roomCount));
+			}
+		}
+		return history;
+	}
+
+	private PriceHistory newBucket(Property property, String month, int time) {
+		PriceHistory bucket = new PriceHistory().refSource(property.getRefSource()).refId(property.getRefId())
+				.month(month);
+		Long price = toCents(property.getPrice());
+		bucket.getChanges().add(new PriceChange().time(time).price(price).livingArea(property.getLivingArea())
+				.surfaceArea(property.getSurfaceArea()).roomCount(property.getRoomCount()));
+		bucket.setCount(1);
+		bucket.setLastPrice(price);
+		bucket.setLastLivingArea(property.getLivingArea());
+		bucket.setLastSurfaceArea(property.getSurfaceArea());
+		bucket.setLastRoomCount(property.getRoomCount());
+		return bucket;
+	}
+
+	/**
+	 * Upserts the bucket, which is only written when it does not exist yet.
+	 */
+	private void insertBucket(BulkOperations operations, PriceHistory bucket) {
+		Document document = new Document();
+		mongoTemplate.getConverter().write(bucket, document);
+		Update update = new Update();
+		document.forEach((field, value) -> {
+			if (!"_id".equals(field) && !"_class".equals(field) && !"ref_source".equals(field)
+					&& !"ref_id".equals(field) && !"month".equals(field)) {
+				update.setOnInsert(field, value);
+			}
+		});
+		operations.upsert(Query.query(Criteria.where("refSource").is(bucket.getRefSource()).and("refId")
+				.is(bucket.getRefId()).and("month").is(bucket.getMonth())), update);
+	}
+
+	/**
+	 * Appends the change if the last price of the bucket was not updated since
+	 * it was read, so that the price delta stays consistent.
+	 *
+	 * @return whether the property changed since the last observation of the
+	 *         bucket, and a change was appended
+	 */
+	private boolean appendChange(BulkOperations operations, PriceHistory bucket, Property property, int time) {
+		PriceChange change = new PriceChange().time(time);
+		Update update = new Update();
+		boolean changed = false;
+
+		Long price = toCents(property.getPrice());
+		if (price != null && !price.equals(bucket.getLastPrice())) {
+			change.price(bucket.getLastPrice() == null ? price : price - bucket.getLastPrice());
+			update.set("last_price", price);
+			changed = true;
+		}
+		if (property.getLivingArea() != null && !same(property.getLivingArea(), bucket.getLastLivingArea())) {
+			change.livingArea(property.getLivingArea());
+			update.set("last_living_area", property.getLivingArea());
+			changed = true;
+		}
+		if (property.getSurfaceArea() != null && !same(property.getSurfaceArea(), bucket.getLastSurfaceArea())) {
+			change.surfaceArea(property.getSurfaceArea());
+			update.set("last_surface_area", property.getSurfaceArea());
+			changed = true;
+		}
+		if (property.getRoomCount() != null && !property.getRoomCount().equals(bucket.getLastRoomCount())) {
+			change.roomCount(property.getRoomCount());
+			update.set("last_room_count", property.getRoomCount());
+			changed = true;
+		}
+		if (!changed) {
+			return false;
+		}
+
+		Document document = new Document();
+		mongoTemplate.getConverter().write(change, document);
+		document.remove("_class");
+		operations.updateOne(
+				Query.query(Criteria.where("id").is(bucket.getId()).and("lastPrice").is(bucket.getLastPrice())),
+				update.push("changes", document).inc("count", 1));
+		return true;
+	}
+
+	private boolean same(BigDecimal value, BigDecimal last) {
+		return last != null && value.compareTo(last) == 0;
+	}
+
+	private Long toCents(BigDecimal price) {
+		return price != null ? price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : null;
+	}
+
+	private BigDecimal toEuros(Long cents) {
+		return cents != null ? BigDecimal.valueOf(cents, 2) : null;
+	}
+
+}
@@ -0,0 +1,247 @@
+package fr.fresnault.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.mongodb.bulk.BulkWriteResult;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+import fr.fresnault.repository.PropertyRepository;
+
+/**
+ * Groups the scraped properties into bulk upserts.
+ * <p>
+ * The properties are queued and written by a single thread, either as soon
+ * as a batch is full or every flush interval, so a property never waits
+ * more than the flush interval. The cities of the properties are replaced by
+ * their canonical instances before the write. The returned future completes when the
+ * batch of the property is written, then the batch is evicted from the
+ * caches of every node and its price history is recorded. The duration of
+ * the writes and the size of the batches are recorded in the metrics
+ * registry, and the write of each property as a {@link PersistEvent}.
+ */
+@Component
+public class PropertyBulkWriter {
+
+	private final Logger log = LoggerFactory.getLogger(PropertyBulkWriter.class);
+
+	private final PropertyRepository propertyRepository;
+
+	private final PriceHistoryService priceHistoryService;
+
+	private final CacheInvalidationService cacheInvalidationService;
+
+	private final CityRegistry cityRegistry;
+
+	private final int batchSize;
+
+	private final Timer writeTimer;
+
+	private final Histogram batchSizes;
+
+	private final Queue<PendingWrite> pending = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "property-bulk-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public PropertyBulkWriter(PropertyRepository propertyRepository, PriceHistoryService priceHistoryService,
+			CacheInvalidationService cacheInvalidationService, CityRegistry cityRegistry,
+			ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+		this.propertyRepository = propertyRepository;
+		this.priceHistoryService = priceHistoryService;
+		this.cacheInvalidationService = cacheInvalidationService;
+		this.cityRegistry = cityRegistry;
+		this.batchSize = applicationProperties.getBulkWrite().getBatchSize();
+		this.writeTimer = metricRegistry.timer(MetricRegistry.name(PropertyBulkWriter.class, "write"));
+		this.batchSizes = metricRegistry.histogram(MetricRegistry.name(PropertyBulkWriter.class, "batch-size"));
+		long flushInterval = applicationProperties.getBulkWrite().getFlushInterval();
+		writer.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void destroy() throws InterruptedException {
+		writer.execute(this::flush);
+		writer.shutdown();
+		writer.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Queues the property for the next bulk upsert.
+	 *
+	 * @return the property, with its id, once written
+	 */
+	public CompletableFuture<Property> write(Property property) {
+		return enqueue(new PendingWrite(property, false));
+	}
+
+	/**
+	 * Queues the property of the result for the next bulk upsert if it
+	 * changed, else only its status: its next refresh, or its removal.
+	 *
+	 * @return the property, once written
+	 */
+	public CompletableFuture<Property> write(ScrapResult result) {
+		if (result.getStatus() != ScrapResult.Status.UPDATED) {
+			if (result.getProperty().getId() == null) {
+				return CompletableFuture.completedFuture(result.getProperty());
+			}
+			return enqueue(new PendingWrite(result.getProperty(), true));
+		}
+		return write(result.getProperty());
+	}
+
+	private CompletableFuture<Property> enqueue(PendingWrite write) {
+		Property property = write.property;
+		if (getKey(property) == null) {
+			write.future.completeExceptionally(
+					new IllegalArgumentException("Property " + property.getUrl() + " has neither id nor reference"));
+			return write.future;
+		}
+		pending.add(write);
+		if (size.incrementAndGet() == batchSize) {
+			writer.execute(this::flush);
+		}
+		return write.future;
+	}
+
+	private void flush() {
+		List<PendingWrite> batch = new ArrayList<>(batchSize);
+		PendingWrite write;
+		while ((write = pending.poll()) != null) {
+			batch.add(write);
+			if (batch.size() == batchSize) {
+				write(batch);
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			write(batch);
+		}
+	}
+
+	private void write(List<PendingWrite> batch) {
+		size.addAndGet(-batch.size());
+
+		// The same ad can be scraped twice in a batch: only its last version is written, with its last status
+		Map<String, List<PendingWrite>> writesByKey = new LinkedHashMap<>();
+		for (PendingWrite write : batch) {
+			writesByKey.computeIfAbsent(getKey(write.property), key -> new ArrayList<>(1)).add(write);
+		}
+		List<Property> properties = new ArrayList<>(writesByKey.size());
+		List<Property> statuses = new ArrayList<>();
+		Map<String, Property> written = new LinkedHashMap<>();
+		writesByKey.forEach((key, writes) -> {
+			Property status = writes.get(writes.size() - 1).property;
+			Property property = null;
+			for (PendingWrite write : writes) {
+				if (!write.statusOnly) {
+					property = write.property;
+				}
+			}
+			if (property == null) {
+				statuses.add(status);
+				written.put(key, status);
+			} else {
+				properties.add(property.active(status.getActive()).nextRefreshAt(status.getNextRefreshAt())
+						.refreshInterval(status.getRefreshInterval()));
+				written.put(key, property);
+			}
+		});
+
+		batchSizes.update(batch.size());
+		try (Timer.Context time = writeTimer.time()) {
+			cityRegistry.canonicalize(properties);
+			propertyRepository.updateStatusAll(statuses);
+			BulkWriteResult result = propertyRepository.upsertAll(properties);
+			log.debug("Bulk write of {} properties: {} inserted, {} updated, {} statuses", properties.size(),
+					result.getUpserts().size(), result.getMatchedCount(), statuses.size());
+			batch.forEach(write -> write.commit(batch.size(), true));
+			writesByKey.forEach((key, writes) -> writes.forEach(write -> write.future.complete(written.get(key))));
+		} catch (RuntimeException e) {
+			log.error("Bulk write of {} properties failed", properties.size(), e);
+			batch.forEach(write -> {
+				write.commit(batch.size(), false);
+				write.future.completeExceptionally(e);
+			});
+			return;
+		}
+
+		try {
+			cacheInvalidationService.invalidate(Property.class, written.values().stream().map(Property::getId)
+					.filter(Objects::nonNull).collect(Collectors.toList()));
+		} catch (RuntimeException e) {
+			log.error("Cache of {} properties could not be invalidated", written.size(), e);
+		}
+
+		try {
+			priceHistoryService.record(properties);
+		} catch (RuntimeException e) {
+			log.error("Price history of {} properties could not be recorded", properties.size(), e);
+		}
+	}
+
+	private String getKey(Property property) {
+		if (property.getId() != null) {
+			return property.getId();
+		}
+		if (property.getRefSource() == null || property.getRefId() == null) {
+			return null;
+		}
+		return property.getRefSource() + ":" + property.getRefId();
+	}
+
+	private static class PendingWrite {
+
+		private final Property property;
+
+		/** Whether only the status of the property is written. */
+		private final boolean statusOnly;
+
+		private final CompletableFuture<Property> future = new CompletableFuture<>();
+
+		private final PersistEvent event = new PersistEvent();
+
+		PendingWrite(Property property, boolean statusOnly) {
+			this.property = property;
+			this.statusOnly = statusOnly;
+			event.begin();
+		}
+
+		void commit(int batchSize, boolean success) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.writeType = statusOnly ? "STATUS" : "UPSERT";
+				event.batchSize = batchSize;
+				event.success = success;
+				event.commit();
+			}
+		}
+	}
+
+}
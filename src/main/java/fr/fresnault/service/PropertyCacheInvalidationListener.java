@@ -0,0 +1,39 @@
+package fr.fresnault.service;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import fr.fresnault.domain.Property;
+
+/**
+ * Invalidates the cached property on every node when it is saved or deleted
+ * through the repository. The bulk writes do not raise these events, the
+ * {@link PropertyBulkWriter} invalidates its batches itself.
+ */
+@Component
+public class PropertyCacheInvalidationListener extends AbstractMongoEventListener<Property> {
+
+	private final CacheInvalidationService cacheInvalidationService;
+
+	public PropertyCacheInvalidationListener(CacheInvalidationService cacheInvalidationService) {
+		this.cacheInvalidationService = cacheInvalidationService;
+	}
+
+	@Override
+	public void onAfterSave(AfterSaveEvent<Property> event) {
+		cacheInvalidationService.invalidate(Property.class, event.getSource().getId());
+	}
+
+	@Override
+	public void onAfterDelete(AfterDeleteEvent<Property> event) {
+		Object id = event.getSource().get("_id");
+		if (id != null) {
+			cacheInvalidationService.invalidate(Property.class,
+					id instanceof ObjectId ? ((ObjectId) id).toHexString() : id.toString());
+		}
+	}
+
+}
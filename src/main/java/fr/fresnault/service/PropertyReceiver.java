@@ -0,0 +1,132 @@
+package fr.fresnault.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.dao.DataAccessException;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.mongodb.MongoException;
+import com.rabbitmq.client.Channel;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.config.ConfigurationRabbitMQ;
+import fr.fresnault.domain.Property;
+
+/**
+ * Scrap worker fed by the leboncoin queue.
+ * <p>
+ * With manual acknowledgement the consumer thread only starts the fetch: the
+ * message is acknowledged once the bulk write of the property is done, so up
+ * to "prefetch" scraps are in flight per consumer. The scraps written are
+ * counted as successes.
+ * <p>
+ * A scrap failing on a transient error, a network or database failure, is
+ * requeued once. A scrap failing again, or on any other error, is rejected
+ * to the dead letter queue and counted as dead: no message is dropped.
+ */
+@Component
+public class PropertyReceiver {
+
+	private final Logger log = LoggerFactory.getLogger(PropertyReceiver.class);
+
+	private final PropertyService propertyService;
+
+	private final PropertyBulkWriter propertyBulkWriter;
+
+	private final AcknowledgeMode acknowledgeMode;
+
+	private final Counter successes;
+
+	private final Counter requeued;
+
+	private final Counter deads;
+
+	public PropertyReceiver(PropertyService propertyService, PropertyBulkWriter propertyBulkWriter,
+			ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+		this.propertyService = propertyService;
+		this.propertyBulkWriter = propertyBulkWriter;
+		this.acknowledgeMode = applicationProperties.getConsumer().getAcknowledgeMode();
+		this.successes = metricRegistry.counter(MetricRegistry.name(PropertyReceiver.class, "success"));
+		this.requeued = metricRegistry.counter(MetricRegistry.name(PropertyReceiver.class, "requeued"));
+		this.deads = metricRegistry.counter(MetricRegistry.name(PropertyReceiver.class, "dead"));
+	}
+
+	@RabbitListener(queues = ConfigurationRabbitMQ.QUEUE_NAME, containerFactory = ConfigurationRabbitMQ.SCRAP_CONTAINER_FACTORY)
+	public void receive(Property property, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+			@Header(AmqpHeaders.REDELIVERED) boolean redelivered) {
+		// Composed on a completed future, so that a synchronous failure of the scrap fails it as well
+		CompletableFuture<Property> done = CompletableFuture.completedFuture(property)
+				.thenCompose(propertyService::scrapPropertyAsync).thenCompose(propertyBulkWriter::write);
+
+		if (acknowledgeMode.isManual()) {
+			done.whenComplete((result, e) -> acknowledge(property, channel, deliveryTag, redelivered, e));
+			return;
+		}
+		try {
+			done.join();
+			successes.inc();
+		} catch (CompletionException e) {
+			boolean requeue = failed(property, redelivered, e.getCause());
+			if (!acknowledgeMode.isAutoAck()) {
+				if (requeue) {
+					throw new AmqpException("Scrap of " + property.getUrl() + " failed, requeued", e.getCause());
+				}
+				throw new AmqpRejectAndDontRequeueException("Scrap of " + property.getUrl() + " failed", e.getCause());
+			}
+		}
+	}
+
+	private void acknowledge(Property property, Channel channel, long deliveryTag, boolean redelivered, Throwable e) {
+		try {
+			if (e == null) {
+				successes.inc();
+				channel.basicAck(deliveryTag, false);
+			} else {
+				channel.basicNack(deliveryTag, false,
+						failed(property, redelivered, e instanceof CompletionException ? e.getCause() : e));
+			}
+		} catch (IOException ioe) {
+			log.error("Acknowledgement of property '{}' failed", property, ioe);
+		}
+	}
+
+	/**
+	 * Logs and counts the failure of the scrap.
+	 *
+	 * @return whether the message must be requeued, else it is dead lettered
+	 */
+	private boolean failed(Property property, boolean redelivered, Throwable e) {
+		if (!redelivered && isTransient(e)) {
+			log.warn("Scrap of property '{}' ({}) failed, requeued: {}", property, property.getUrl(), e.toString());
+			requeued.inc();
+			return true;
+		}
+		log.error("Scrap of property '{}' ({}) failed", property, property.getUrl(), e);
+		deads.inc();
+		return false;
+	}
+
+	/**
+	 * @return whether the error may not happen again: a failed fetch, or a
+	 *         failed database write, including the insert of an ad by two
+	 *         nodes at once. A page that can not be parsed is not retried.
+	 */
+	private boolean isTransient(Throwable e) {
+		return e instanceof IOException || e instanceof UncheckedIOException || e instanceof DataAccessException
+				|| e instanceof MongoException;
+	}
+
+}
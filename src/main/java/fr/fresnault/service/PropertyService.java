@@ -1,245 +1,303 @@
 package fr.fresnault.service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.Instant;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.jsoup.Connection;
+import java.net.URI;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import fr.fresnault.config.LeBonCoinConfig;
-import fr.fresnault.domain.City;
-import fr.fresnault.domain.Property;
-import fr.fresnault.domain.PropertyPhoto;
-import fr.fresnault.domain.enumeration.Transaction;
-import fr.fresnault.domain.enumeration.Type;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.config.ApplicationProperties.Scrap.ExtractionMode;
+import fr.fresnault.domain.Property;
+import fr.fresnault.service.fetch.FetchedPage;
+import fr.fresnault.service.fetch.PageFetcher;
+import fr.fresnault.service.parser.AdviewFingerprinter;
+import fr.fresnault.service.parser.AdviewMapper;
+import fr.fresnault.service.parser.AdviewMapper.Adview;
+import fr.fresnault.service.parser.FluxStateExtractor;
+
+/**
+ * Scraps the properties from the pages of their ads.
+ * <p>
+ * Each stage of a scrap is timed in the metrics registry: the fetch of the
+ * page, the extraction of the adview from the HTML, the parse of its JSON,
+ * and its mapping to the property. The fetch and the parse of each ad are
+ * also recorded as flight recorder events, {@link FetchEvent} and
+ * {@link ParseEvent}.
+ */
 @Component
 public class PropertyService {
 
+	/** Urls of the ads found removed, answered without fetching their page again. */
+	public static final String REMOVED_ADS_CACHE = "removedAds";
+
 	private final Logger log = LoggerFactory.getLogger(PropertyService.class);
 
-	private final LeBonCoinConfig leBonCoinConfig;
+	private final PageFetcher pageFetcher;
 
-	private static final ThreadLocal<DateFormat> df = new ThreadLocal<DateFormat>() {
-		@Override
-		protected DateFormat initialValue() {
-			return new SimpleDateFormat("yyyy-MM-dd kk:mm:ss");
-		}
-	};
+	private final FluxStateExtractor fluxStateExtractor;
 
-	public PropertyService(LeBonCoinConfig leBonCoinConfig) {
-		this.leBonCoinConfig = leBonCoinConfig;
-	}
+	private final AdviewFingerprinter adviewFingerprinter;
 
-	@Scheduled(cron = "0 0 */6 * * *")
-	public void status() {
-		log.info("Receiver started");
-	}
+	private final AdviewMapper adviewMapper;
 
-	public Property scrapProperty(Property property)
-			throws IOException, JSONException, ParseException, InterruptedException {
-		log.info("Traitement property '{}'", property);
+	private final RefreshPolicy refreshPolicy;
 
-		Document document = getDocument(property.getUrl());
-		String json = document.getElementsByTag("script").stream().filter(e -> e.data().startsWith("window.FLUX_STATE"))
-				.findFirst().get().data();
-
-		JSONObject jsonObj = new JSONObject(json.substring(20));
-		JSONObject adview = jsonObj.getJSONObject("adview");
-		Map<String, String> attributes = getAttributes(adview.getJSONArray("attributes"));
-
-		String name = getName(adview);
-		Transaction transaction = getTransaction(adview);
-		Type type = getType(attributes);
-		String description = getDescription(adview);
-		Instant createdDate = getCreatedDate(adview);
-		BigDecimal price = getPrice(adview);
-		Integer roomCount = getRoomCount(attributes);
-		BigDecimal area = getArea(attributes);
-		// Set<PropertyFeature> features = getFeatures();
-		Set<PropertyPhoto> photos = getPhotos(adview);
-		City city = getCity(adview);
-
-		property.name(name).transaction(transaction).type(type).description(description).createdDate(createdDate)
-				.price(price).roomCount(roomCount).photos(photos).city(city);
-
-		if (type == Type.LAND) {
-			property.surfaceArea(area);
-		} else {
-			property.livingArea(area);
-		}
+	private final ExtractionMode extractionMode;
 
-		return property;
-	}
+	private final List<String> listingPaths;
 
-	private String getStringFromJSON(JSONObject json, String key) {
-		return json.has(key) ? json.getString(key) : "";
-	}
+	private final Cache removedAds;
 
-	private Map<String, String> getAttributes(JSONArray jsonArray) {
-		Map<String, String> attributes = new HashMap<>();
+	private final Counter updated;
 
-		for (int index = 0; index < jsonArray.length(); index++) {
-			JSONObject jsonObject = jsonArray.getJSONObject(index);
-			attributes.put(jsonObject.getString("key"), jsonObject.getString("value"));
-		}
+	private final Counter unchanged;
 
-		return attributes;
+	private final Counter removed;
+
+	private final Counter parseErrors;
+
+	private final Timer fetchTimer;
+
+	private final Timer htmlParseTimer;
+
+	private final Timer jsonParseTimer;
+
+	private final Timer mappingTimer;
+
+	public PropertyService(PageFetcher pageFetcher, FluxStateExtractor fluxStateExtractor,
+			AdviewFingerprinter adviewFingerprinter, AdviewMapper adviewMapper, RefreshPolicy refreshPolicy,
+			ApplicationProperties applicationProperties, CacheManager cacheManager, MetricRegistry metricRegistry) {
+		this.pageFetcher = pageFetcher;
+		this.fluxStateExtractor = fluxStateExtractor;
+		this.adviewFingerprinter = adviewFingerprinter;
+		this.adviewMapper = adviewMapper;
+		this.refreshPolicy = refreshPolicy;
+		this.extractionMode = applicationProperties.getScrap().getExtractionMode();
+		this.listingPaths = applicationProperties.getScrap().getListingPaths();
+		this.removedAds = cacheManager.getCache(REMOVED_ADS_CACHE);
+		this.updated = metricRegistry.counter(MetricRegistry.name(PropertyService.class, "updated"));
+		this.unchanged = metricRegistry.counter(MetricRegistry.name(PropertyService.class, "unchanged"));
+		this.removed = metricRegistry.counter(MetricRegistry.name(PropertyService.class, "removed"));
+		this.parseErrors = metricRegistry.counter(MetricRegistry.name(PropertyService.class, "parse-error"));
+		this.fetchTimer = metricRegistry.timer(MetricRegistry.name(PropertyService.class, "fetch"));
+		this.htmlParseTimer = metricRegistry.timer(MetricRegistry.name(PropertyService.class, "html-parse"));
+		this.jsonParseTimer = metricRegistry.timer(MetricRegistry.name(PropertyService.class, "json-parse"));
+		this.mappingTimer = metricRegistry.timer(MetricRegistry.name(PropertyService.class, "mapping"));
 	}
 
-	private String getName(JSONObject adview) {
-		return getStringFromJSON(adview, "subject");
+	@Scheduled(cron = "0 0 */6 * * *")
+	public void status() {
+		log.info("Receiver started");
 	}
 
-	private Transaction getTransaction(JSONObject adview) {
-		String typeTransaction = getStringFromJSON(adview, "category_name");
-		if ("Locations".equals(typeTransaction)) {
-			return Transaction.RENT;
-		} else {
-			return Transaction.SELL;
+	/**
+	 * Fetches the page of the property without blocking, then scraps it on
+	 * the thread completing the fetch. An ad found removed recently is not
+	 * fetched again.
+	 */
+	public CompletableFuture<ScrapResult> scrapPropertyAsync(Property property) {
+		log.info("Traitement property '{}'", property);
+
+		if (property.getUrl() != null && removedAds.get(property.getUrl()) != null) {
+			log.debug("Ad {} is known as removed", property.getUrl());
+			return CompletableFuture.completedFuture(ScrapResult.removed(property.active(false).nextRefreshAt(null)));
 		}
+		FetchEvent fetchEvent = new FetchEvent();
+		fetchEvent.begin();
+		long start = System.nanoTime();
+		return pageFetcher.fetch(property.getUrl()).thenApply(page -> {
+			record(fetchTimer, start);
+			commit(fetchEvent, page);
+			return scrapProperty(property, page);
+		});
 	}
 
-	private Type getType(Map<String, String> attributes) {
-		if (attributes.containsKey("real_estate_type")) {
-			switch (attributes.get("real_estate_type")) {
-			case "1":
-				return Type.HOUSE;
-			case "2":
-				return Type.FLAT;
-			case "3":
-				return Type.LAND;
-			case "4":
-				return Type.PARKING;
-			case "5":
-				return Type.OTHER;
-			}
+	/**
+	 * Scraps a property from an already fetched page.
+	 * <p>
+	 * The adview is fingerprinted first: when the fingerprint is the one of
+	 * the property, the ad did not change and is not mapped again. Only a
+	 * changed ad is parsed twice. In both cases the next refresh of the ad is
+	 * scheduled.
+	 * <p>
+	 * An ad whose page is gone, redirects to a listing, or holds no adview,
+	 * is removed: it is remembered as such, and not refreshed anymore. An ad
+	 * redirected to any other page, a new url of the same ad, is scraped from
+	 * that page, and only removed if it holds no adview.
+	 */
+	public ScrapResult scrapProperty(Property property, FetchedPage page) {
+		if (page.getStatusCode() == 404 || page.getStatusCode() == 410) {
+			return removed(property, page, "HTTP " + page.getStatusCode());
+		}
+		if (!page.isSuccessful()) {
+			throw new UncheckedIOException(
+					new IOException("Impossible to fetch " + page.getUrl() + " (HTTP " + page.getStatusCode() + ")"));
 		}
-		return Type.UNKNOWN;
-	}
 
-	public String getDescription(JSONObject adview) {
-		return getStringFromJSON(adview, "body");
-	}
+		if (isRedirectedToListing(page)) {
+			return removed(property, page, "redirected to " + page.getLocation());
+		}
 
-	public Instant getCreatedDate(JSONObject adview) {
-		String createdDate = getStringFromJSON(adview, "first_publication_date");
+		BigDecimal previousPrice = property.getPrice();
+		ParseEvent parseEvent = new ParseEvent();
+		parseEvent.begin();
 		try {
-			return df.get().parse(createdDate).toInstant();
-		} catch (Exception e) {
-			return new Date().toInstant();
+			long start = System.nanoTime();
+			String script = extractionMode == ExtractionMode.DOM ? getFluxStateScript(page) : null;
+			long fingerprint;
+			try (JsonParser adview = getAdview(page, script)) {
+				start = record(htmlParseTimer, start);
+				if (property.getFingerprint() == null) {
+					// Never scraped: the fields are mapped from their copy, in a single parse of the page
+					TokenBuffer copy = new TokenBuffer(adview);
+					fingerprint = adviewFingerprinter.fingerprint(adview, copy);
+					start = record(jsonParseTimer, start);
+					try (JsonParser copied = copy.asParser()) {
+						copied.nextToken();
+						Property mapped = map(copied, property, parseEvent).fingerprint(fingerprint);
+						record(mappingTimer, start);
+						return updated(mapped, previousPrice);
+					}
+				}
+				fingerprint = adviewFingerprinter.fingerprint(adview);
+				record(jsonParseTimer, start);
+			}
+			if (property.getFingerprint() == fingerprint) {
+				unchanged.inc();
+				return ScrapResult.unchanged(refreshPolicy.schedule(property.active(true), false, false));
+			}
+			start = System.nanoTime();
+			try (JsonParser adview = getAdview(page, script)) {
+				start = record(htmlParseTimer, start);
+				Property mapped = map(adview, property, parseEvent).fingerprint(fingerprint);
+				record(mappingTimer, start);
+				return updated(mapped, previousPrice);
+			}
+		} catch (NoSuchElementException e) {
+			return removed(property, page, e.getMessage());
+		} catch (IOException e) {
+			parseErrors.inc();
+			throw new IllegalStateException("Impossible to parse " + page.getUrl(), e);
+		} finally {
+			parseEvent.bytes = page.getBody().length;
+			parseEvent.commit();
 		}
 	}
 
-	private BigDecimal getPrice(JSONObject adview) {
-		if (adview.has("price")) {
-			JSONArray prices = adview.getJSONArray("price");
-			if (prices.length() > 0) {
-				return new BigDecimal(prices.getInt(0));
-			}
-		}
-		return null;
+	private Property map(JsonParser adview, Property property, ParseEvent parseEvent) throws IOException {
+		Adview fields = adviewMapper.read(adview);
+		parseEvent.fieldCount = fields.getAttributes().size();
+		return adviewMapper.build(fields, property);
 	}
 
-	private Integer getRoomCount(Map<String, String> attributes) {
-		if (attributes.containsKey("rooms")) {
-			String nbRooms = attributes.get("rooms");
-			if (nbRooms != null && !nbRooms.isEmpty()) {
-				return Integer.getInteger(nbRooms);
+	private void commit(FetchEvent fetchEvent, FetchedPage page) {
+		fetchEvent.end();
+		if (fetchEvent.shouldCommit()) {
+			try {
+				fetchEvent.host = URI.create(page.getUrl()).getHost();
+			} catch (IllegalArgumentException e) {
+				fetchEvent.host = page.getUrl();
 			}
+			fetchEvent.status = page.getStatusCode();
+			fetchEvent.bytes = page.getBody().length;
+			fetchEvent.attempts = page.getAttempts();
+			fetchEvent.commit();
 		}
-		return null;
 	}
 
-	public BigDecimal getArea(Map<String, String> attributes) throws JSONException {
-		if (attributes.containsKey("square")) {
-			String nbRooms = attributes.get("square");
-			if (nbRooms != null && !nbRooms.isEmpty()) {
-				return new BigDecimal(nbRooms);
-			}
+	private ScrapResult updated(Property property, BigDecimal previousPrice) {
+		updated.inc();
+		boolean priceChanged = previousPrice != null
+				&& (property.getPrice() == null || previousPrice.compareTo(property.getPrice()) != 0);
+		return ScrapResult.updated(refreshPolicy.schedule(property.active(true), true, priceChanged));
+	}
+
+	private ScrapResult removed(Property property, FetchedPage page, String cause) {
+		log.info("Ad {} is removed ({})", page.getUrl(), cause);
+		removed.inc();
+		if (property.getUrl() != null) {
+			removedAds.put(property.getUrl(), Boolean.TRUE);
 		}
-		return null;
+		return ScrapResult.removed(property.active(false).nextRefreshAt(null));
 	}
 
-	/*
-	 * PropertyType propertyType = getType(doc);
-	 * 
-	 * if (propertyType == PropertyType.FLAT || propertyType ==
-	 * PropertyType.HOUSE) { return getSurface(doc); }
-	 * 
-	 * return null; }
-	 * 
-	 * public BigDecimal getSurfaceArea(Document doc) { PropertyType
-	 * propertyType = getType(doc);
-	 * 
-	 * if (propertyType == PropertyType.LAND) { return getSurface(doc); }
-	 * 
-	 * return null; }
+	/**
+	 * Records the time elapsed since the start in the timer.
+	 *
+	 * @return the end time, start of the next stage
 	 */
+	private long record(Timer timer, long start) {
+		long end = System.nanoTime();
+		timer.update(end - start, TimeUnit.NANOSECONDS);
+		return end;
+	}
 
-	public Set<PropertyPhoto> getPhotos(JSONObject adview) throws JSONException {
-		Set<PropertyPhoto> photos = new HashSet<>();
-
-		if (adview.has("images")) {
-			JSONObject jsonPhotos = adview.getJSONObject("images");
-
-			for (int index = 0; index < jsonPhotos.getInt("nb_images"); index++) {
-				photos.add(new PropertyPhoto().photoSeq(index)
-						.photoThumbUrl(jsonPhotos.getJSONArray("urls_thumb").getString(index))
-						.photoUrl(jsonPhotos.getJSONArray("urls_large").getString(index)));
+	/**
+	 * @return whether the page was redirected to one of the listing paths
+	 */
+	private boolean isRedirectedToListing(FetchedPage page) {
+		if (page.getLocation() == null || page.getLocation().equals(page.getUrl())) {
+			return false;
+		}
+		String path;
+		try {
+			path = getPath(page.getLocation());
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		for (String listingPath : listingPaths) {
+			if (path.equals(listingPath) || path.startsWith(listingPath + '/')) {
+				return true;
 			}
 		}
-
-		return photos;
+		return false;
 	}
 
-	public City getCity(JSONObject adview) throws JSONException {
-		JSONObject location = adview.getJSONObject("location");
-
-		City city = new City();
-		city.setName(getStringFromJSON(location, "city"));
-		city.setZipCode(getStringFromJSON(location, "zipcode"));
-
-		return city;
+	private String getPath(String url) {
+		String path = URI.create(url).getPath();
+		if (path == null) {
+			return "";
+		}
+		return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
 	}
 
-	private Document getDocument(String url) throws InterruptedException {
-		Boolean connected = false;
-		int nbTry = 1;
-		Connection connexion = null;
-		Document document = null;
+	private String getFluxStateScript(FetchedPage page) throws IOException {
+		Document document = Jsoup.parse(new ByteArrayInputStream(page.getBody()),
+				page.getCharset() != null ? page.getCharset().name() : null, page.getLocation());
+		return document.getElementsByTag("script").stream().filter(e -> e.data().startsWith("window.FLUX_STATE"))
+				.findFirst().orElseThrow(() -> new NoSuchElementException("No FLUX_STATE in " + page.getUrl()))
+				.data();
+	}
 
-		while (!connected && nbTry++ < 15) {
-			try {
-				connexion = Jsoup.connect(url).headers(leBonCoinConfig.getHeaders()).followRedirects(true);
-				document = connexion.get();
-				connected = true;
-			} catch (Exception e) {
-				log.error("Connect failed, retry " + nbTry + "...");
-				Thread.sleep(1000 * nbTry);
-			}
-		}
-		if (document == null) {
-			throw new IllegalStateException("Impossible to connect to " + url);
-		}
-		return document;
+	/**
+	 * @param script
+	 *            the FLUX_STATE script in DOM mode, null to scan the page bytes
+	 */
+	private JsonParser getAdview(FetchedPage page, String script) throws IOException {
+		Optional<JsonParser> adview = script != null ? fluxStateExtractor.findAdviewInScript(script)
+				: fluxStateExtractor.findAdview(page.getBody());
+		return adview.orElseThrow(() -> new NoSuchElementException("No adview in " + page.getUrl()));
 	}
 
 }
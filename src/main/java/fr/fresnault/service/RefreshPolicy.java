@@ -0,0 +1,56 @@
+package fr.fresnault.service;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.stereotype.Component;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+
+/**
+ * Decides when an ad must be scraped again, from what its last scrap found.
+ * <p>
+ * Ads that do not change are refreshed less and less often, ads whose price
+ * moves more and more often, so the fetches go where the changes are.
+ */
+@Component
+public class RefreshPolicy {
+
+	/** Spread of the refresh dates, so ads scraped together are not refreshed together. */
+	private static final double JITTER = 0.1;
+
+	private final ApplicationProperties.Refresh properties;
+
+	public RefreshPolicy(ApplicationProperties applicationProperties) {
+		this.properties = applicationProperties.getRefresh();
+	}
+
+	/**
+	 * Sets the refresh interval and the next refresh date of a scraped
+	 * property.
+	 *
+	 * @param changed
+	 *            whether the ad changed since its last scrap
+	 * @param priceChanged
+	 *            whether its price moved
+	 */
+	public Property schedule(Property property, boolean changed, boolean priceChanged) {
+		double interval;
+		if (property.getRefreshInterval() == null) {
+			interval = properties.getInitialInterval().getSeconds();
+		} else if (priceChanged) {
+			interval = property.getRefreshInterval() * properties.getTightenFactor();
+		} else if (!changed) {
+			interval = property.getRefreshInterval() * properties.getBackoffFactor();
+		} else {
+			interval = property.getRefreshInterval();
+		}
+		long seconds = Math.max(properties.getMinInterval().getSeconds(),
+				Math.min(properties.getMaxInterval().getSeconds(), Math.round(interval)));
+		double jitter = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+
+		return property.refreshInterval(seconds).nextRefreshAt(Instant.now().plusSeconds(Math.round(seconds * jitter)));
+	}
+
+}
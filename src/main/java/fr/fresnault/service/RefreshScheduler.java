@@ -0,0 +1,89 @@
+package fr.fresnault.service;
+
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.config.ConfigurationRabbitMQ;
+import fr.fresnault.domain.Property;
+
+/**
+ * Queues the scrap of the ads whose next refresh is due.
+ * <p>
+ * The due ads are read on the next_refresh_at index and claimed one by one:
+ * their next refresh is pushed back by the lease, so another node polling
+ * at the same time does not queue them too, and an ad whose scrap is lost is
+ * queued again once the lease expires. The scraps go through the leboncoin
+ * queue, hence through the same workers and rate limits as the others.
+ */
+@Service
+public class RefreshScheduler {
+
+	private final Logger log = LoggerFactory.getLogger(RefreshScheduler.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	private final RabbitTemplate rabbitTemplate;
+
+	private final ApplicationProperties.Refresh properties;
+
+	private final Counter queued;
+
+	public RefreshScheduler(MongoTemplate mongoTemplate, RabbitTemplate rabbitTemplate,
+			ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+		this.mongoTemplate = mongoTemplate;
+		this.rabbitTemplate = rabbitTemplate;
+		this.properties = applicationProperties.getRefresh();
+		this.queued = metricRegistry.counter(MetricRegistry.name(RefreshScheduler.class, "queued"));
+	}
+
+	/**
+	 * Queues up to a batch of due ads.
+	 * <p>
+	 * This is scheduled to get fired every poll interval.
+	 */
+	@Scheduled(fixedDelayString = "${application.refresh.poll-interval}")
+	public void queueDueProperties() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		Instant now = Instant.now();
+		Update lease = Update.update("nextRefreshAt", now.plus(properties.getLease()));
+		int count = 0;
+		Property property;
+		while (count < properties.getBatchSize() && (property = claimDueProperty(now, lease)) != null) {
+			rabbitTemplate.convertAndSend(ConfigurationRabbitMQ.EXCHANGE_NAME, ConfigurationRabbitMQ.ROUTING_KEY,
+					property);
+			count++;
+		}
+		if (count > 0) {
+			queued.inc(count);
+			log.debug("Queued the refresh of {} properties", count);
+		}
+	}
+
+	/**
+	 * @return the due property, with only the fields needed by its scrap, or
+	 *         null if none is due
+	 */
+	private Property claimDueProperty(Instant now, Update lease) {
+		Query query = Query.query(Criteria.where("nextRefreshAt").lte(now)).with(Sort.by("nextRefreshAt"));
+		query.fields().include("url").include("refSource").include("refId").include("fingerprint")
+				.include("price").include("refreshInterval");
+		return mongoTemplate.findAndModify(query, lease, Property.class);
+	}
+
+}
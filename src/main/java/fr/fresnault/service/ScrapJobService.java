@@ -0,0 +1,195 @@
+package fr.fresnault.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.ScrapJob;
+import fr.fresnault.domain.enumeration.ScrapJobStatus;
+import fr.fresnault.domain.enumeration.Source;
+import fr.fresnault.repository.PropertyRepository;
+import fr.fresnault.repository.ScrapJobRepository;
+import fr.fresnault.service.dto.ScrapJobDTO;
+import fr.fresnault.web.rest.errors.TooManyScrapJobsException;
+
+/**
+ * Runs the scraps submitted through the API in the background.
+ * <p>
+ * A job goes through the same non-blocking path as the queue (fetch,
+ * extraction, bulk write), so the request thread only registers it. The
+ * state of the jobs is kept in Mongo until the job retention after they end,
+ * so that any node behind the load balancer can answer it. Only the
+ * completions of the jobs followed by a node are kept in its memory, up to
+ * the max pending jobs.
+ */
+@Service
+public class ScrapJobService {
+
+	private final Logger log = LoggerFactory.getLogger(ScrapJobService.class);
+
+	private final PropertyService propertyService;
+
+	private final PropertyBulkWriter propertyBulkWriter;
+
+	private final PropertyRepository propertyRepository;
+
+	private final ScrapJobRepository scrapJobRepository;
+
+	private final Executor executor;
+
+	private final ApplicationProperties.Scrap properties;
+
+	/** Completions of the jobs running on this node. */
+	private final ConcurrentMap<String, CompletableFuture<ScrapJobDTO>> pendingJobs = new ConcurrentHashMap<>();
+
+	/** Completions of the jobs running on other nodes, that are subscribed to. */
+	private final ConcurrentMap<String, CompletableFuture<ScrapJobDTO>> watchedJobs = new ConcurrentHashMap<>();
+
+	public ScrapJobService(PropertyService propertyService, PropertyBulkWriter propertyBulkWriter,
+			PropertyRepository propertyRepository, ScrapJobRepository scrapJobRepository,
+			@Qualifier("taskExecutor") Executor executor, ApplicationProperties applicationProperties) {
+		this.propertyService = propertyService;
+		this.propertyBulkWriter = propertyBulkWriter;
+		this.propertyRepository = propertyRepository;
+		this.scrapJobRepository = scrapJobRepository;
+		this.executor = executor;
+		this.properties = applicationProperties.getScrap();
+	}
+
+	/**
+	 * Submits the scrap of a Leboncoin ad by id. An ad already scraped is
+	 * refreshed from its property, and only written again if it changed.
+	 *
+	 * @throws TooManyScrapJobsException
+	 *             if this node already runs the max pending jobs
+	 */
+	public ScrapJobDTO submitAdId(String adId) {
+		return submit(propertyRepository.findOneByRefSourceAndRefId(Source.LEBONCOIN, adId)
+				.orElseGet(() -> new Property().url(properties.getAdUrl().replace("{id}", adId))));
+	}
+
+	/**
+	 * Submits the scrap of an ad page.
+	 *
+	 * @return the pending job
+	 * @throws TooManyScrapJobsException
+	 *             if this node already runs the max pending jobs
+	 */
+	public ScrapJobDTO submitUrl(String url) {
+		return submit(new Property().url(url));
+	}
+
+	private ScrapJobDTO submit(Property property) {
+		if (pendingJobs.size() >= properties.getMaxPendingJobs()) {
+			throw new TooManyScrapJobsException();
+		}
+		String url = property.getUrl();
+		Instant now = Instant.now();
+		ScrapJob job = new ScrapJob().url(url).status(ScrapJobStatus.PENDING).submittedDate(now)
+				.expireAt(now.plusMillis(properties.getJobRetention()));
+		job.setId(UUID.randomUUID().toString());
+		scrapJobRepository.insert(job);
+		ScrapJobDTO submitted = new ScrapJobDTO(job);
+		CompletableFuture<ScrapJobDTO> completion = new CompletableFuture<>();
+		pendingJobs.put(job.getId(), completion);
+		log.debug("Submitted scrap job {}", job);
+
+		// The final state is written from the task executor, not from the bulk
+		// writer thread
+		CompletableFuture.completedFuture(property).thenCompose(propertyService::scrapPropertyAsync)
+				.thenCompose(propertyBulkWriter::write).whenCompleteAsync((written, e) -> {
+					if (e == null) {
+						job.status(ScrapJobStatus.DONE).propertyId(written.getId());
+					} else {
+						Throwable cause = e.getCause() != null ? e.getCause() : e;
+						log.warn("Scrap job {} of {} failed: {}", job.getId(), url, cause.toString());
+						job.status(ScrapJobStatus.FAILED).error(cause.getMessage());
+					}
+					Instant completedDate = Instant.now();
+					job.completedDate(completedDate).expireAt(completedDate.plusMillis(properties.getJobRetention()));
+					try {
+						scrapJobRepository.save(job);
+					} catch (RuntimeException saveException) {
+						log.warn("Scrap job {} could not be saved: {}", job.getId(), saveException.toString());
+					} finally {
+						pendingJobs.remove(job.getId());
+						completion.complete(new ScrapJobDTO(job));
+					}
+				}, executor);
+		return submitted;
+	}
+
+	/**
+	 * @return the current state of the job
+	 */
+	public Optional<ScrapJobDTO> findOne(String id) {
+		return scrapJobRepository.findById(id).map(ScrapJobDTO::new);
+	}
+
+	/**
+	 * Follows a job until it ends. A job running on another node is followed by
+	 * polling its state.
+	 *
+	 * @return a future of the final state of the job
+	 * @throws TooManyScrapJobsException
+	 *             if this node already follows the max pending jobs of the
+	 *             other nodes
+	 */
+	public Optional<CompletableFuture<ScrapJobDTO>> getCompletion(String id) {
+		CompletableFuture<ScrapJobDTO> completion = pendingJobs.get(id);
+		if (completion != null) {
+			return Optional.of(completion);
+		}
+		Optional<ScrapJob> job = scrapJobRepository.findById(id);
+		if (!job.isPresent() || job.get().getStatus() != ScrapJobStatus.PENDING) {
+			return job.map(ended -> CompletableFuture.completedFuture(new ScrapJobDTO(ended)));
+		}
+		if (!watchedJobs.containsKey(id) && watchedJobs.size() >= properties.getMaxPendingJobs()) {
+			throw new TooManyScrapJobsException();
+		}
+		return Optional.of(watchedJobs.computeIfAbsent(id, watched -> new CompletableFuture<>()));
+	}
+
+	/**
+	 * Completes the watched jobs that ended on other nodes, or that expired
+	 * while pending because their node stopped.
+	 * <p>
+	 * This is scheduled to get fired every second.
+	 */
+	@Scheduled(fixedDelay = 1000)
+	public void completeWatchedJobs() {
+		if (watchedJobs.isEmpty()) {
+			return;
+		}
+		Map<String, ScrapJob> jobs = new HashMap<>();
+		scrapJobRepository.findAllById(new ArrayList<>(watchedJobs.keySet()))
+				.forEach(job -> jobs.put(job.getId(), job));
+		watchedJobs.forEach((id, completion) -> {
+			ScrapJob job = jobs.get(id);
+			if (job == null) {
+				watchedJobs.remove(id);
+				completion.completeExceptionally(new NoSuchElementException("Scrap job " + id + " expired"));
+			} else if (job.getStatus() != ScrapJobStatus.PENDING) {
+				watchedJobs.remove(id);
+				completion.complete(new ScrapJobDTO(job));
+			}
+		});
+	}
+
+}
@@ -0,0 +1,53 @@
+package fr.fresnault.service;
+
+import fr.fresnault.domain.Property;
+
+/**
+ * Outcome of the scrap of a property.
+ */
+public final class ScrapResult {
+
+	public enum Status {
+		/** The ad changed, or was never scraped: the property must be written. */
+		UPDATED,
+		/** The ad did not change since the last scrap: the property was left as is. */
+		UNCHANGED,
+		/** The ad was removed from the site: the property is inactive and no longer refreshed. */
+		REMOVED
+	}
+
+	private final Status status;
+
+	private final Property property;
+
+	private ScrapResult(Status status, Property property) {
+		this.status = status;
+		this.property = property;
+	}
+
+	public static ScrapResult updated(Property property) {
+		return new ScrapResult(Status.UPDATED, property);
+	}
+
+	public static ScrapResult unchanged(Property property) {
+		return new ScrapResult(Status.UNCHANGED, property);
+	}
+
+	public static ScrapResult removed(Property property) {
+		return new ScrapResult(Status.REMOVED, property);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public Property getProperty() {
+		return property;
+	}
+
+	@Override
+	public String toString() {
+		return "ScrapResult{" + "status=" + status + ", property=" + property + "}";
+	}
+
+}
@@ -38,10 +38,14 @@ public class UserService {
 
     private final AuthorityRepository authorityRepository;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository) {
+    private final CacheInvalidationService cacheInvalidationService;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository,
+        CacheInvalidationService cacheInvalidationService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
+        this.cacheInvalidationService = cacheInvalidationService;
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -52,6 +56,7 @@ public class UserService {
                 user.setActivated(true);
                 user.setActivationKey(null);
                 userRepository.save(user);
+                clearUserCaches(user);
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -66,29 +71,31 @@ public class UserService {
                 user.setResetKey(null);
                 user.setResetDate(null);
                 userRepository.save(user);
+                clearUserCaches(user);
                 return user;
             });
     }
 
     public Optional<User> requestPasswordReset(String mail) {
-        return userRepository.findOneByEmailIgnoreCase(mail)
+        return userRepository.findOneByEmailLower(mail.toLowerCase(Locale.ENGLISH))
             .filter(User::getActivated)
             .map(user -> {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(Instant.now());
                 userRepository.save(user);
+                clearUserCaches(user);
                 return user;
             });
     }
 
     public User registerUser(UserDTO userDTO, String password) {
-        userRepository.findOneByLogin(userDTO.getLogin().toLowerCase()).ifPresent(existingUser -> {
+        userRepository.findOneByLogin(userDTO.getLogin().toLowerCase(Locale.ENGLISH)).ifPresent(existingUser -> {
             boolean removed = removeNonActivatedUser(existingUser);
             if (!removed) {
                 throw new LoginAlreadyUsedException();
             }
         });
-        userRepository.findOneByEmailIgnoreCase(userDTO.getEmail()).ifPresent(existingUser -> {
+        userRepository.findOneByEmailLower(userDTO.getEmail().toLowerCase(Locale.ENGLISH)).ifPresent(existingUser -> {
             boolean removed = removeNonActivatedUser(existingUser);
             if (!removed) {
                 throw new EmailAlreadyUsedException();
@@ -96,12 +103,12 @@ public class UserService {
         });
         User newUser = new User();
         String encryptedPassword = passwordEncoder.encode(password);
-        newUser.setLogin(userDTO.getLogin().toLowerCase());
+        newUser.setLogin(userDTO.getLogin().toLowerCase(Locale.ENGLISH));
         // new user gets initially a generated password
         newUser.setPassword(encryptedPassword);
         newUser.setFirstName(userDTO.getFirstName());
         newUser.setLastName(userDTO.getLastName());
-        newUser.setEmail(userDTO.getEmail().toLowerCase());
+        newUser.setEmail(userDTO.getEmail().toLowerCase(Locale.ENGLISH));
         newUser.setImageUrl(userDTO.getImageUrl());
         newUser.setLangKey(userDTO.getLangKey());
         // new user is not active
@@ -120,15 +127,16 @@ public class UserService {
              return false;
         }
         userRepository.delete(existingUser);
+        clearUserCaches(existingUser);
         return true;
     }
 
     public User createUser(UserDTO userDTO) {
         User user = new User();
-        user.setLogin(userDTO.getLogin().toLowerCase());
+        user.setLogin(userDTO.getLogin().toLowerCase(Locale.ENGLISH));
         user.setFirstName(userDTO.getFirstName());
         user.setLastName(userDTO.getLastName());
-        user.setEmail(userDTO.getEmail().toLowerCase());
+        user.setEmail(userDTO.getEmail().toLowerCase(Locale.ENGLISH));
         user.setImageUrl(userDTO.getImageUrl());
         if (userDTO.getLangKey() == null) {
             user.setLangKey(Constants.DEFAULT_LANGUAGE); // default language
@@ -166,12 +174,14 @@ public class UserService {
         SecurityUtils.getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
             .ifPresent(user -> {
+                Set<String> previousCacheKeys = userCacheKeys(user);
                 user.setFirstName(firstName);
                 user.setLastName(lastName);
-                user.setEmail(email.toLowerCase());
+                user.setEmail(email.toLowerCase(Locale.ENGLISH));
                 user.setLangKey(langKey);
                 user.setImageUrl(imageUrl);
                 userRepository.save(user);
+                clearUserCaches(user, previousCacheKeys);
                 log.debug("Changed Information for User: {}", user);
             });
     }
@@ -188,10 +198,11 @@ public class UserService {
             .filter(Optional::isPresent)
             .map(Optional::get)
             .map(user -> {
-                user.setLogin(userDTO.getLogin().toLowerCase());
+                Set<String> previousCacheKeys = userCacheKeys(user);
+                user.setLogin(userDTO.getLogin().toLowerCase(Locale.ENGLISH));
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
-                user.setEmail(userDTO.getEmail().toLowerCase());
+                user.setEmail(userDTO.getEmail().toLowerCase(Locale.ENGLISH));
                 user.setImageUrl(userDTO.getImageUrl());
                 user.setActivated(userDTO.isActivated());
                 user.setLangKey(userDTO.getLangKey());
@@ -203,6 +214,7 @@ public class UserService {
                     .map(Optional::get)
                     .forEach(managedAuthorities::add);
                 userRepository.save(user);
+                clearUserCaches(user, previousCacheKeys);
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -212,6 +224,7 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
+            clearUserCaches(user);
             log.debug("Deleted User: {}", user);
         });
     }
@@ -227,6 +240,7 @@ public class UserService {
                 String encryptedPassword = passwordEncoder.encode(newPassword);
                 user.setPassword(encryptedPassword);
                 userRepository.save(user);
+                clearUserCaches(user);
                 log.debug("Changed password for User: {}", user);
             });
     }
@@ -259,9 +273,38 @@ public class UserService {
             .forEach(user -> {
                 log.debug("Deleting not activated user {}", user.getLogin());
                 userRepository.delete(user);
+                clearUserCaches(user);
             });
     }
 
+    /**
+     * @return the keys of the user in the users by login and by email caches
+     */
+    private Set<String> userCacheKeys(User user) {
+        Set<String> keys = new HashSet<>();
+        if (user.getLogin() != null) {
+            keys.add(user.getLogin());
+        }
+        if (user.getEmailLower() != null) {
+            keys.add(user.getEmailLower());
+        }
+        return keys;
+    }
+
+    private void clearUserCaches(User user) {
+        clearUserCaches(user, Collections.emptySet());
+    }
+
+    /**
+     * Evicts the user from the caches of every node, under its current keys
+     * and under the keys it had before being changed.
+     */
+    private void clearUserCaches(User user, Set<String> previousCacheKeys) {
+        Set<String> keys = userCacheKeys(user);
+        keys.addAll(previousCacheKeys);
+        cacheInvalidationService.invalidate(User.class, keys);
+    }
+
     /**
      * @return a list of all the authorities
      */
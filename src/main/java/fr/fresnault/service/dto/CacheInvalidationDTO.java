@@ -0,0 +1,48 @@
+package fr.fresnault.service.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO representing the entities of a type to evict from the caches of
+ * every node, all of them when no id is given.
+ */
+public class CacheInvalidationDTO {
+
+    private String type;
+
+    private List<String> ids = new ArrayList<>();
+
+    public CacheInvalidationDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CacheInvalidationDTO(String type, List<String> ids) {
+        this.type = type;
+        this.ids = ids;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationDTO{" +
+            "type='" + type + "'" +
+            ", ids=" + ids.size() +
+            "}";
+    }
+}
@@ -0,0 +1,84 @@
+package fr.fresnault.service.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A DTO representing the price and areas of an ad at a point of its history.
+ */
+public class PricePointDTO {
+
+    private Instant date;
+
+    private BigDecimal price;
+
+    private BigDecimal livingArea;
+
+    private BigDecimal surfaceArea;
+
+    private Integer roomCount;
+
+    public PricePointDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public PricePointDTO(Instant date, BigDecimal price, BigDecimal livingArea, BigDecimal surfaceArea,
+            Integer roomCount) {
+        this.date = date;
+        this.price = price;
+        this.livingArea = livingArea;
+        this.surfaceArea = surfaceArea;
+        this.roomCount = roomCount;
+    }
+
+    public Instant getDate() {
+        return date;
+    }
+
+    public void setDate(Instant date) {
+        this.date = date;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public BigDecimal getLivingArea() {
+        return livingArea;
+    }
+
+    public void setLivingArea(BigDecimal livingArea) {
+        this.livingArea = livingArea;
+    }
+
+    public BigDecimal getSurfaceArea() {
+        return surfaceArea;
+    }
+
+    public void setSurfaceArea(BigDecimal surfaceArea) {
+        this.surfaceArea = surfaceArea;
+    }
+
+    public Integer getRoomCount() {
+        return roomCount;
+    }
+
+    public void setRoomCount(Integer roomCount) {
+        this.roomCount = roomCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PricePointDTO{" +
+            "date=" + date +
+            ", price=" + price +
+            ", livingArea=" + livingArea +
+            ", surfaceArea=" + surfaceArea +
+            ", roomCount=" + roomCount +
+            "}";
+    }
+}
@@ -0,0 +1,109 @@
+package fr.fresnault.service.dto;
+
+import fr.fresnault.domain.ScrapJob;
+import fr.fresnault.domain.enumeration.ScrapJobStatus;
+
+import java.time.Instant;
+
+/**
+ * A DTO representing the state of a scrap job.
+ */
+public class ScrapJobDTO {
+
+    private String id;
+
+    private String url;
+
+    private ScrapJobStatus status;
+
+    private String propertyId;
+
+    private String error;
+
+    private Instant submittedDate;
+
+    private Instant completedDate;
+
+    public ScrapJobDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ScrapJobDTO(ScrapJob scrapJob) {
+        this.id = scrapJob.getId();
+        this.url = scrapJob.getUrl();
+        this.status = scrapJob.getStatus();
+        this.propertyId = scrapJob.getPropertyId();
+        this.error = scrapJob.getError();
+        this.submittedDate = scrapJob.getSubmittedDate();
+        this.completedDate = scrapJob.getCompletedDate();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public ScrapJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ScrapJobStatus status) {
+        this.status = status;
+    }
+
+    public String getPropertyId() {
+        return propertyId;
+    }
+
+    public void setPropertyId(String propertyId) {
+        this.propertyId = propertyId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Instant getSubmittedDate() {
+        return submittedDate;
+    }
+
+    public void setSubmittedDate(Instant submittedDate) {
+        this.submittedDate = submittedDate;
+    }
+
+    public Instant getCompletedDate() {
+        return completedDate;
+    }
+
+    public void setCompletedDate(Instant completedDate) {
+        this.completedDate = completedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "ScrapJobDTO{" +
+            "id='" + id + '\'' +
+            ", url='" + url + '\'' +
+            ", status=" + status +
+            ", propertyId='" + propertyId + '\'' +
+            ", error='" + error + '\'' +
+            ", submittedDate=" + submittedDate +
+            ", completedDate=" + completedDate +
+            "}";
+    }
+}
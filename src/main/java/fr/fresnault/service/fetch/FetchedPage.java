@@ -0,0 +1,73 @@
+package fr.fresnault.service.fetch;
+
+import java.nio.charset.Charset;
+
+/**
+ * A page downloaded by a {@link PageFetcher}, with its body already decoded.
+ */
+public class FetchedPage {
+
+	private final String url;
+
+	private final String location;
+
+	private final int statusCode;
+
+	private final Charset charset;
+
+	private final byte[] body;
+
+	private final int attempts;
+
+	public FetchedPage(String url, String location, int statusCode, Charset charset, byte[] body, int attempts) {
+		this.url = url;
+		this.location = location;
+		this.statusCode = statusCode;
+		this.charset = charset;
+		this.body = body;
+		this.attempts = attempts;
+	}
+
+	/**
+	 * @return the requested url
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the url of the page once the redirects are followed
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the charset announced by the server, or null
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public boolean isSuccessful() {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	@Override
+	public String toString() {
+		return "FetchedPage{" + "url='" + url + "'" + ", location='" + location + "'" + ", statusCode=" + statusCode
+				+ ", bytes=" + body.length + ", attempts=" + attempts + "}";
+	}
+}
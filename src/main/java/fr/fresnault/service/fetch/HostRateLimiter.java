@@ -0,0 +1,204 @@
+package fr.fresnault.service.fetch;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import fr.fresnault.config.ApplicationProperties;
+
+/**
+ * Paces the requests sent to each host with a token bucket whose rate adapts
+ * to the throttling of the site.
+ * <p>
+ * Callers do not wait for a token: {@link #reserve(String)} books the next
+ * slot of the host and returns how long to delay the request, so the
+ * requests can be scheduled without blocking a thread. The buckets are
+ * lock-free and shared by all the fetches.
+ */
+@Component
+public class HostRateLimiter {
+
+	private final Logger log = LoggerFactory.getLogger(HostRateLimiter.class);
+
+	private final ApplicationProperties.Fetch.RateLimit properties;
+
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+	public HostRateLimiter(ApplicationProperties applicationProperties) {
+		this.properties = applicationProperties.getFetch().getRateLimit();
+	}
+
+	/**
+	 * Books a request to the given host.
+	 *
+	 * @return the delay in nanoseconds before the request can be sent
+	 */
+	public long reserve(String host) {
+		if (!properties.isEnabled()) {
+			return 0;
+		}
+		return getBucket(host).reserve(System.nanoTime());
+	}
+
+	/**
+	 * Records a response that was not throttled, letting the rate of the host
+	 * grow back.
+	 */
+	public void onSuccess(String host) {
+		if (properties.isEnabled()) {
+			getBucket(host).increase();
+		}
+	}
+
+	/**
+	 * Records a throttled response (429 or 403): the rate of the host is
+	 * decreased, and no request is sent before {@code retryAfter} milliseconds
+	 * when the site told so.
+	 */
+	public void onThrottled(String host, long retryAfter) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		TokenBucket bucket = getBucket(host);
+		long now = System.nanoTime();
+		if (retryAfter > 0) {
+			bucket.pause(now, TimeUnit.MILLISECONDS.toNanos(retryAfter));
+		}
+		if (bucket.decrease(now)) {
+			log.info("Throttled by {}, rate lowered to {} requests/s", host, String.format("%.2f", bucket.getRate()));
+		}
+	}
+
+	/**
+	 * @return the current rate of the host, in requests per second
+	 */
+	public double getRate(String host) {
+		return getBucket(host).getRate();
+	}
+
+	private TokenBucket getBucket(String host) {
+		return buckets.computeIfAbsent(host, key -> new TokenBucket(properties));
+	}
+
+	/**
+	 * Token bucket implemented as a generic cell rate algorithm: the state is
+	 * the theoretical arrival time of the next request, advanced by one
+	 * emission interval per request, and a request is allowed as long as that
+	 * time is less than {@code burst} intervals ahead of now.
+	 */
+	static class TokenBucket {
+
+		private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+		private final ApplicationProperties.Fetch.RateLimit properties;
+
+		private final AtomicLong theoreticalArrival;
+
+		/** Current rate in requests per second, as the bits of a double. */
+		private final AtomicLong rate;
+
+		/** Rate at which the host last throttled us, as the bits of a double. */
+		private final AtomicLong throttledRate;
+
+		private final AtomicLong lastDecrease;
+
+		TokenBucket(ApplicationProperties.Fetch.RateLimit properties) {
+			this.properties = properties;
+			long now = System.nanoTime();
+			this.theoreticalArrival = new AtomicLong(now);
+			this.rate = new AtomicLong(Double.doubleToLongBits(
+					Math.max(properties.getMinRate(), Math.min(properties.getMaxRate(), properties.getRate()))));
+			this.throttledRate = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+			this.lastDecrease = new AtomicLong(now - TimeUnit.MILLISECONDS.toNanos(properties.getThrottleCooldown()));
+		}
+
+		long reserve(long now) {
+			long interval = (long) (NANOS_PER_SECOND / getRate());
+			long tolerance = interval * Math.max(1, properties.getBurst());
+			while (true) {
+				long current = theoreticalArrival.get();
+				long next = Math.max(current, now) + interval;
+				if (theoreticalArrival.compareAndSet(current, next)) {
+					return Math.max(0, next - tolerance - now);
+				}
+			}
+		}
+
+		/**
+		 * Holds every request until the delay is elapsed: the arrival time is
+		 * set {@code burst - 1} intervals after the end of the pause, since
+		 * {@link #reserve(long)} releases a request as soon as it is less than
+		 * {@code burst} intervals ahead.
+		 */
+		void pause(long now, long delay) {
+			long interval = (long) (NANOS_PER_SECOND / getRate());
+			long until = now + delay + interval * (Math.max(1, properties.getBurst()) - 1);
+			while (true) {
+				long current = theoreticalArrival.get();
+				if (current >= until || theoreticalArrival.compareAndSet(current, until)) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Additive increase: each success adds {@code increase / rate}, that is
+		 * {@code increase} requests per second every second at full pace, ten
+		 * times slower above the rate that was last throttled, so the rate
+		 * settles just under the limit of the site instead of oscillating
+		 * around it.
+		 */
+		void increase() {
+			double max = properties.getMaxRate();
+			double throttled = Double.longBitsToDouble(throttledRate.get());
+			while (true) {
+				long bits = rate.get();
+				double current = Double.longBitsToDouble(bits);
+				if (current >= max) {
+					return;
+				}
+				double step = properties.getIncrease() / current;
+				if (current >= throttled) {
+					step /= 10;
+				}
+				double next = Math.min(max, current + step);
+				if (rate.compareAndSet(bits, Double.doubleToLongBits(next))) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Multiplicative decrease, at most once per cooldown since the responses
+		 * throttled together all answer the same rate.
+		 *
+		 * @return whether the rate was decreased
+		 */
+		boolean decrease(long now) {
+			long last = lastDecrease.get();
+			if (now - last < TimeUnit.MILLISECONDS.toNanos(properties.getThrottleCooldown())
+					|| !lastDecrease.compareAndSet(last, now)) {
+				return false;
+			}
+			while (true) {
+				long bits = rate.get();
+				double current = Double.longBitsToDouble(bits);
+				double next = Math.max(properties.getMinRate(), current * properties.getDecreaseFactor());
+				if (rate.compareAndSet(bits, Double.doubleToLongBits(next))) {
+					throttledRate.set(bits);
+					return true;
+				}
+			}
+		}
+
+		double getRate() {
+			return Double.longBitsToDouble(rate.get());
+		}
+	}
+
+}
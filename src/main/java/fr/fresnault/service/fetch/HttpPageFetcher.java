@@ -0,0 +1,314 @@
+package fr.fresnault.service.fetch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+import org.brotli.dec.BrotliInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.config.LeBonCoinConfig;
+
+/**
+ * {@link PageFetcher} built on a pooled, non-blocking HTTP client.
+ * <p>
+ * Connections are kept alive and shared between requests, every attempt is
+ * paced by the {@link HostRateLimiter} of its host, failed attempts are
+ * rescheduled with an exponential backoff instead of parking a thread, and
+ * the bodies are decoded on the task executor to keep the I/O reactor free.
+ * The retries, the bytes received and the size of the decoded pages are
+ * recorded in the metrics registry. A fetch that cannot be sent, because its
+ * url is invalid, or cannot be scheduled or decoded any more, because the
+ * executors are saturated or shut down, fails instead of throwing or never
+ * completing.
+ */
+@Component
+public class HttpPageFetcher implements PageFetcher {
+
+	private final Logger log = LoggerFactory.getLogger(HttpPageFetcher.class);
+
+	private final ApplicationProperties.Fetch properties;
+
+	private final HostRateLimiter rateLimiter;
+
+	private final Executor executor;
+
+	private final CloseableHttpAsyncClient client;
+
+	private final Counter retries;
+
+	private final Meter bytes;
+
+	private final Histogram pageSize;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "page-fetcher-scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public HttpPageFetcher(ApplicationProperties applicationProperties, LeBonCoinConfig leBonCoinConfig,
+			HostRateLimiter rateLimiter, @Qualifier("taskExecutor") Executor executor, MetricRegistry metricRegistry)
+			throws IOReactorException {
+		this.properties = applicationProperties.getFetch();
+		this.rateLimiter = rateLimiter;
+		this.executor = executor;
+		this.retries = metricRegistry.counter(MetricRegistry.name(HttpPageFetcher.class, "retry"));
+		this.bytes = metricRegistry.meter(MetricRegistry.name(HttpPageFetcher.class, "bytes"));
+		this.pageSize = metricRegistry.histogram(MetricRegistry.name(HttpPageFetcher.class, "page-size"));
+
+		PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+				new DefaultConnectingIOReactor());
+		connectionManager.setMaxTotal(properties.getMaxConnections());
+		connectionManager.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+
+		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(properties.getConnectTimeout())
+				.setConnectionRequestTimeout(properties.getConnectTimeout())
+				.setSocketTimeout(properties.getSocketTimeout()).build();
+
+		this.client = HttpAsyncClients.custom().setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig).setDefaultHeaders(getDefaultHeaders(leBonCoinConfig)).build();
+		this.client.start();
+	}
+
+	@PreDestroy
+	public void destroy() throws IOException {
+		scheduler.shutdownNow();
+		client.close();
+	}
+
+	@Override
+	public CompletableFuture<FetchedPage> fetch(String url) {
+		CompletableFuture<FetchedPage> future = new CompletableFuture<>();
+		attempt(url, 1, future);
+		return future;
+	}
+
+	private void attempt(String url, int attempt, CompletableFuture<FetchedPage> future) {
+		if (url == null) {
+			future.completeExceptionally(new IllegalArgumentException("No url to fetch"));
+			return;
+		}
+		HttpGet request;
+		try {
+			request = new HttpGet(url);
+		} catch (IllegalArgumentException e) {
+			future.completeExceptionally(e);
+			return;
+		}
+		String host = request.getURI().getHost();
+		if (host == null) {
+			future.completeExceptionally(new IllegalArgumentException("No host in the url " + url));
+			return;
+		}
+		long delay = rateLimiter.reserve(host);
+		if (delay > 0) {
+			submit(future,
+					() -> scheduler.schedule(() -> send(url, request, host, attempt, future), delay, TimeUnit.NANOSECONDS));
+		} else {
+			send(url, request, host, attempt, future);
+		}
+	}
+
+	private void send(String url, HttpGet request, String host, int attempt, CompletableFuture<FetchedPage> future) {
+		HttpClientContext context = HttpClientContext.create();
+		client.execute(request, context, new FutureCallback<HttpResponse>() {
+
+			@Override
+			public void completed(HttpResponse response) {
+				int statusCode = response.getStatusLine().getStatusCode();
+				if (isThrottled(statusCode)) {
+					rateLimiter.onThrottled(host, getRetryAfter(response));
+				} else {
+					rateLimiter.onSuccess(host);
+				}
+				if (isRetryable(statusCode) && attempt < properties.getMaxAttempts()) {
+					EntityUtils.consumeQuietly(response.getEntity());
+					retry(url, attempt, future, "HTTP " + statusCode);
+					return;
+				}
+				if (!submit(future, () -> executor.execute(() -> {
+					try {
+						future.complete(toPage(url, context, response, attempt));
+					} catch (Exception e) {
+						future.completeExceptionally(e);
+					}
+				}))) {
+					EntityUtils.consumeQuietly(response.getEntity());
+				}
+			}
+
+			@Override
+			public void failed(Exception e) {
+				if (attempt < properties.getMaxAttempts()) {
+					retry(url, attempt, future, e.toString());
+				} else {
+					future.completeExceptionally(
+							new IOException("Impossible to connect to " + url + " after " + attempt + " attempts", e));
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				future.cancel(false);
+			}
+		});
+	}
+
+	private void retry(String url, int attempt, CompletableFuture<FetchedPage> future, String cause) {
+		long delay = Math.min(properties.getMaxRetryDelay(), properties.getRetryDelay() << Math.min(attempt - 1, 20));
+		log.warn("Fetch of {} failed ({}), retry {} in {} ms", url, cause, attempt + 1, delay);
+		retries.inc();
+		submit(future, () -> scheduler.schedule(() -> attempt(url, attempt + 1, future), delay, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Runs the submission of a task of the fetch, and fails the fetch when the
+	 * task is rejected.
+	 *
+	 * @return false when the task was rejected
+	 */
+	private boolean submit(CompletableFuture<FetchedPage> future, Runnable submission) {
+		try {
+			submission.run();
+			return true;
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+			return false;
+		}
+	}
+
+	private boolean isRetryable(int statusCode) {
+		return isThrottled(statusCode) || statusCode >= 500;
+	}
+
+	private boolean isThrottled(int statusCode) {
+		return statusCode == 403 || statusCode == 429;
+	}
+
+	/**
+	 * @return the delay of the Retry-After header in milliseconds, 0 when it
+	 *         is absent or given as a date
+	 */
+	private long getRetryAfter(HttpResponse response) {
+		Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+		if (retryAfter != null) {
+			try {
+				return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.getValue().trim()));
+			} catch (NumberFormatException e) {
+				log.debug("Ignoring Retry-After {}", retryAfter.getValue());
+			}
+		}
+		return 0;
+	}
+
+	private FetchedPage toPage(String url, HttpClientContext context, HttpResponse response, int attempts)
+			throws IOException {
+		HttpEntity entity = response.getEntity();
+		byte[] body = new byte[0];
+		Charset charset = null;
+		if (entity != null) {
+			ContentType contentType = ContentType.get(entity);
+			if (contentType != null) {
+				charset = contentType.getCharset();
+			}
+			byte[] content = EntityUtils.toByteArray(entity);
+			bytes.mark(content.length);
+			body = decode(content, entity.getContentEncoding());
+		}
+		pageSize.update(body.length);
+		return new FetchedPage(url, getLocation(url, context), response.getStatusLine().getStatusCode(), charset, body,
+				attempts);
+	}
+
+	private String getLocation(String url, HttpClientContext context) {
+		List<URI> redirects = context.getRedirectLocations();
+		if (redirects == null || redirects.isEmpty()) {
+			return url;
+		}
+		return redirects.get(redirects.size() - 1).toString();
+	}
+
+	private byte[] decode(byte[] content, Header contentEncoding) throws IOException {
+		if (contentEncoding == null || content.length == 0) {
+			return content;
+		}
+		InputStream input = new ByteArrayInputStream(content);
+		switch (contentEncoding.getValue().trim().toLowerCase(Locale.ENGLISH)) {
+		case "gzip":
+		case "x-gzip":
+			input = new GZIPInputStream(input);
+			break;
+		case "deflate":
+			input = new InflaterInputStream(input);
+			break;
+		case "br":
+			input = new BrotliInputStream(input);
+			break;
+		default:
+			return content;
+		}
+		try (InputStream decoded = input) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream(content.length * 4);
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = decoded.read(buffer)) != -1) {
+				output.write(buffer, 0, read);
+			}
+			return output.toByteArray();
+		}
+	}
+
+	private List<Header> getDefaultHeaders(LeBonCoinConfig leBonCoinConfig) {
+		List<Header> headers = new ArrayList<>();
+		leBonCoinConfig.getHeaders().forEach((name, value) -> {
+			// Host and Connection are managed by the connection pool
+			if (!HttpHeaders.HOST.equalsIgnoreCase(name) && !HttpHeaders.CONNECTION.equalsIgnoreCase(name)) {
+				headers.add(new BasicHeader(name, value));
+			}
+		});
+		return headers;
+	}
+
+}
@@ -0,0 +1,20 @@
+package fr.fresnault.service.fetch;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downloads the pages to scrap.
+ */
+public interface PageFetcher {
+
+	/**
+	 * Fetches a page without blocking the caller.
+	 *
+	 * @param url
+	 *            the url of the page
+	 * @return a future completed with the fetched page, whatever its HTTP
+	 *         status, or completed exceptionally when all the attempts failed
+	 */
+	CompletableFuture<FetchedPage> fetch(String url);
+
+}
@@ -0,0 +1,114 @@
+package fr.fresnault.service.parser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Computes a 64-bit fingerprint of the adview fields a property is built
+ * from, to detect the ads that did not change since their last scrap.
+ * <p>
+ * The fingerprint is a FNV-1a hash of the tokens of those fields, read from
+ * the parser buffers: nothing is mapped nor allocated, unless the fields are
+ * copied for a later mapping. Fields that change on
+ * every page view (index date, counters...) are left out.
+ */
+@Component
+public class AdviewFingerprinter {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/** The fields read by {@link AdviewMapper#read(JsonParser)}. */
+	private static final Set<String> FIELDS = new HashSet<>(Arrays.asList("list_id", "subject", "body",
+			"category_name", "first_publication_date", "price", "attributes", "images", "location"));
+
+	/**
+	 * @param parser
+	 *            a parser positioned on the start of the adview object, left
+	 *            on its end
+	 */
+	public long fingerprint(JsonParser parser) throws IOException {
+		return fingerprint(parser, null);
+	}
+
+	/**
+	 * Fingerprints the adview and copies its fingerprinted fields, so they can
+	 * be mapped without parsing the page again.
+	 *
+	 * @param parser
+	 *            a parser positioned on the start of the adview object, left
+	 *            on its end
+	 * @param copy
+	 *            the generator the fingerprinted fields are copied to, as an
+	 *            object, or null
+	 */
+	public long fingerprint(JsonParser parser, JsonGenerator copy) throws IOException {
+		if (copy != null) {
+			copy.writeStartObject();
+		}
+		long hash = FNV_OFFSET_BASIS;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			if (!FIELDS.contains(field)) {
+				parser.nextToken();
+				parser.skipChildren();
+				continue;
+			}
+			if (copy != null) {
+				copy.copyCurrentEvent(parser);
+			}
+			hash = hash(hash, field);
+			JsonToken value = parser.nextToken();
+			int depth = 0;
+			do {
+				hash = hash(hash, parser, value);
+				if (copy != null) {
+					copy.copyCurrentEvent(parser);
+				}
+				if (value.isStructStart()) {
+					depth++;
+				} else if (value.isStructEnd()) {
+					depth--;
+				}
+			} while (depth > 0 && (value = parser.nextToken()) != null);
+		}
+		if (copy != null) {
+			copy.writeEndObject();
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, JsonParser parser, JsonToken token) throws IOException {
+		hash = hash(hash, token.id());
+		if (token == JsonToken.FIELD_NAME || token.isScalarValue()) {
+			char[] text = parser.getTextCharacters();
+			int end = parser.getTextOffset() + parser.getTextLength();
+			for (int index = parser.getTextOffset(); index < end; index++) {
+				hash = hash(hash, text[index]);
+			}
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String text) {
+		for (int index = 0; index < text.length(); index++) {
+			hash = hash(hash, text.charAt(index));
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, int value) {
+		hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+		return (hash ^ ((value >>> 8) & 0xff)) * FNV_PRIME;
+	}
+
+}
@@ -0,0 +1,401 @@
+package fr.fresnault.service.parser;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import fr.fresnault.domain.City;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.PropertyPhoto;
+import fr.fresnault.domain.enumeration.Source;
+import fr.fresnault.domain.enumeration.Transaction;
+import fr.fresnault.domain.enumeration.Type;
+
+/**
+ * Maps the adview object of a Leboncoin page on a {@link Property}, reading
+ * the JSON tokens directly.
+ * <p>
+ * Only the fields used by the property are read, every other value or
+ * sub-tree is skipped by the parser without being materialized.
+ */
+@Component
+public class AdviewMapper {
+
+	private static final DateTimeFormatter PUBLICATION_DATE_FORMAT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd kk:mm:ss");
+
+	/**
+	 * Reads the adview, then fills the property with it.
+	 *
+	 * @param parser
+	 *            a parser positioned on the start of the adview object
+	 * @param property
+	 *            the property to fill
+	 * @return the property
+	 */
+	public Property map(JsonParser parser, Property property) throws IOException {
+		return build(read(parser), property);
+	}
+
+	/**
+	 * @param parser
+	 *            a parser positioned on the start of the adview object, left
+	 *            on its end
+	 * @return the raw values of the fields used by the property
+	 */
+	public Adview read(JsonParser parser) throws IOException {
+		Adview adview = new Adview();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			switch (field) {
+			case "list_id":
+				adview.listId = readText(parser);
+				break;
+			case "subject":
+				adview.subject = readText(parser);
+				break;
+			case "body":
+				adview.body = readText(parser);
+				break;
+			case "category_name":
+				adview.categoryName = readText(parser);
+				break;
+			case "first_publication_date":
+				adview.firstPublicationDate = readText(parser);
+				break;
+			case "price":
+				adview.price = readPrice(parser);
+				break;
+			case "attributes":
+				adview.attributes = readAttributes(parser);
+				break;
+			case "images":
+				adview.photos = readPhotos(parser);
+				break;
+			case "location":
+				adview.city = readCity(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+		return adview;
+	}
+
+	/**
+	 * Fills the property with the values read from an adview.
+	 */
+	public Property build(Adview adview, Property property) {
+		Type type = getType(adview.attributes);
+		BigDecimal area = getArea(adview.attributes);
+
+		if (adview.listId != null && !adview.listId.isEmpty()) {
+			property.refSource(Source.LEBONCOIN).refId(adview.listId);
+		}
+		property.name(adview.subject).transaction(getTransaction(adview.categoryName)).type(type)
+				.description(adview.body).createdDate(parseCreatedDate(adview.firstPublicationDate))
+				.price(adview.price).roomCount(getRoomCount(adview.attributes)).photos(adview.photos)
+				.city(adview.city);
+
+		if (type == Type.LAND) {
+			property.surfaceArea(area);
+		} else {
+			property.livingArea(area);
+		}
+
+		return property;
+	}
+
+	/**
+	 * @param parser
+	 *            a parser positioned on the start of the attributes array
+	 */
+	public Map<String, String> readAttributes(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return Collections.emptyMap();
+		}
+		Map<String, String> attributes = new HashMap<>();
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			String key = null;
+			String value = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("key".equals(field)) {
+					key = parser.getValueAsString();
+				} else if ("value".equals(field)) {
+					value = parser.getValueAsString();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (key != null) {
+				attributes.put(key, value);
+			}
+		}
+		return attributes;
+	}
+
+	/**
+	 * @param parser
+	 *            a parser positioned on the start of the images object
+	 */
+	public Set<PropertyPhoto> readPhotos(JsonParser parser) throws IOException {
+		Set<PropertyPhoto> photos = new HashSet<>();
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return photos;
+		}
+
+		int nbImages = 0;
+		List<String> thumbUrls = Collections.emptyList();
+		List<String> largeUrls = Collections.emptyList();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			switch (field) {
+			case "nb_images":
+				nbImages = parser.getValueAsInt();
+				break;
+			case "urls_thumb":
+				thumbUrls = readTexts(parser);
+				break;
+			case "urls_large":
+				largeUrls = readTexts(parser);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		int count = Math.min(nbImages, Math.min(thumbUrls.size(), largeUrls.size()));
+		for (int index = 0; index < count; index++) {
+			photos.add(new PropertyPhoto().photoSeq(index).urls(thumbUrls.get(index), largeUrls.get(index)));
+		}
+		return photos;
+	}
+
+	/**
+	 * @param parser
+	 *            a parser positioned on the start of the location object
+	 */
+	public City readCity(JsonParser parser) throws IOException {
+		City city = new City();
+		city.setName("");
+		city.setZipCode("");
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return city;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("city".equals(field)) {
+				city.setName(readText(parser));
+			} else if ("zipcode".equals(field)) {
+				city.setZipCode(readText(parser));
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return city;
+	}
+
+	/**
+	 * @return the first publication date, or now if it can not be parsed
+	 */
+	public Instant parseCreatedDate(String firstPublicationDate) {
+		try {
+			return LocalDateTime.parse(firstPublicationDate, PUBLICATION_DATE_FORMAT).atZone(ZoneId.systemDefault())
+					.toInstant();
+		} catch (DateTimeParseException | NullPointerException e) {
+			return Instant.now();
+		}
+	}
+
+	private BigDecimal readPrice(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return null;
+		}
+		BigDecimal price = null;
+		boolean first = true;
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			if (first) {
+				price = toPrice(parser);
+				first = false;
+			}
+			parser.skipChildren();
+		}
+		return price;
+	}
+
+	/**
+	 * @return the price as an int, like the JSON mapping read it: a decimal is
+	 *         truncated and a string is parsed, or null if it is not a number
+	 */
+	private BigDecimal toPrice(JsonParser parser) throws IOException {
+		switch (parser.currentToken()) {
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return new BigDecimal(parser.getIntValue());
+		case VALUE_STRING:
+			try {
+				return new BigDecimal(Integer.parseInt(parser.getText()));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		default:
+			return null;
+		}
+	}
+
+	private List<String> readTexts(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return Collections.emptyList();
+		}
+		List<String> texts = new ArrayList<>();
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			texts.add(parser.getValueAsString());
+			parser.skipChildren();
+		}
+		return texts;
+	}
+
+	private String readText(JsonParser parser) throws IOException {
+		String text = parser.getValueAsString();
+		parser.skipChildren();
+		return text != null ? text : "";
+	}
+
+	private Transaction getTransaction(String categoryName) {
+		if ("Locations".equals(categoryName)) {
+			return Transaction.RENT;
+		} else {
+			return Transaction.SELL;
+		}
+	}
+
+	private Type getType(Map<String, String> attributes) {
+		String realEstateType = attributes.get("real_estate_type");
+		if (realEstateType != null) {
+			switch (realEstateType) {
+			case "1":
+				return Type.HOUSE;
+			case "2":
+				return Type.FLAT;
+			case "3":
+				return Type.LAND;
+			case "4":
+				return Type.PARKING;
+			case "5":
+				return Type.OTHER;
+			}
+		}
+		return Type.UNKNOWN;
+	}
+
+	private Integer getRoomCount(Map<String, String> attributes) {
+		String rooms = attributes.get("rooms");
+		if (rooms != null && !rooms.isEmpty()) {
+			try {
+				return Integer.valueOf(rooms);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	private BigDecimal getArea(Map<String, String> attributes) {
+		String square = attributes.get("square");
+		if (square != null && !square.isEmpty()) {
+			try {
+				return new BigDecimal(square);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Raw values of the adview fields used by a property.
+	 */
+	public static class Adview {
+
+		private String listId;
+
+		private String subject = "";
+
+		private String body = "";
+
+		private String categoryName = "";
+
+		private String firstPublicationDate = "";
+
+		private BigDecimal price;
+
+		private Map<String, String> attributes = Collections.emptyMap();
+
+		private Set<PropertyPhoto> photos = new HashSet<>();
+
+		private City city;
+
+		public String getListId() {
+			return listId;
+		}
+
+		public String getSubject() {
+			return subject;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		public String getCategoryName() {
+			return categoryName;
+		}
+
+		public String getFirstPublicationDate() {
+			return firstPublicationDate;
+		}
+
+		public BigDecimal getPrice() {
+			return price;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+
+		public Set<PropertyPhoto> getPhotos() {
+			return photos;
+		}
+
+		public City getCity() {
+			return city;
+		}
+	}
+
+}
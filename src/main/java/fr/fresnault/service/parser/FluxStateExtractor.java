@@ -0,0 +1,122 @@
+package fr.fresnault.service.parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Extracts the ad state from the raw bytes of a Leboncoin page, without
+ * building its DOM.
+ * <p>
+ * The page is scanned for the {@code window.FLUX_STATE = } assignment, and
+ * only the JSON slice following it is handed to a streaming parser, which
+ * skips the sub-trees before {@code adview} without materializing them.
+ */
+@Component
+public class FluxStateExtractor {
+
+	private static final byte[] MARKER = "window.FLUX_STATE".getBytes(StandardCharsets.US_ASCII);
+
+	private static final String ADVIEW = "adview";
+
+	private final JsonFactory jsonFactory;
+
+	public FluxStateExtractor(ObjectMapper objectMapper) {
+		this.jsonFactory = objectMapper.getFactory();
+	}
+
+	/**
+	 * @return the index of the opening brace of the FLUX_STATE object, or -1
+	 *         if the page does not contain it
+	 */
+	public int indexOfFluxState(byte[] page) {
+		int from = 0;
+		int marker;
+		while ((marker = indexOf(page, MARKER, from)) >= 0) {
+			int index = skipWhitespaces(page, marker + MARKER.length);
+			if (index < page.length && page[index] == '=') {
+				index = skipWhitespaces(page, index + 1);
+				if (index < page.length && page[index] == '{') {
+					return index;
+				}
+			}
+			from = marker + MARKER.length;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return a parser positioned on the start of the adview object, if the
+	 *         page contains one
+	 */
+	public Optional<JsonParser> findAdview(byte[] page) throws IOException {
+		int start = indexOfFluxState(page);
+		if (start < 0) {
+			return Optional.empty();
+		}
+		return findAdview(jsonFactory.createParser(page, start, page.length - start));
+	}
+
+	/**
+	 * @param script
+	 *            the content of the FLUX_STATE script tag
+	 * @return a parser positioned on the start of the adview object, if the
+	 *         script contains one
+	 */
+	public Optional<JsonParser> findAdviewInScript(String script) throws IOException {
+		int start = script.indexOf('{');
+		if (start < 0) {
+			return Optional.empty();
+		}
+		return findAdview(jsonFactory.createParser(script.substring(start)));
+	}
+
+	private Optional<JsonParser> findAdview(JsonParser parser) throws IOException {
+		if (parser.nextToken() == JsonToken.START_OBJECT) {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (ADVIEW.equals(name) && value == JsonToken.START_OBJECT) {
+					return Optional.of(parser);
+				}
+				parser.skipChildren();
+			}
+		}
+		parser.close();
+		return Optional.empty();
+	}
+
+	private static int skipWhitespaces(byte[] page, int index) {
+		while (index < page.length && (page[index] == ' ' || page[index] == '\t' || page[index] == '\n'
+				|| page[index] == '\r')) {
+			index++;
+		}
+		return index;
+	}
+
+	private static int indexOf(byte[] page, byte[] pattern, int from) {
+		byte first = pattern[0];
+		int last = page.length - pattern.length;
+		for (int index = from; index <= last; index++) {
+			if (page[index] != first) {
+				continue;
+			}
+			int match = 1;
+			while (match < pattern.length && page[index + match] == pattern[match]) {
+				match++;
+			}
+			if (match == pattern.length) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+}
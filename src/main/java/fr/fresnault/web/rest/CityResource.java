@@ -78,15 +78,16 @@ public class CityResource {
     }
 
     /**
-     * GET  /cities : get all the cities.
+     * GET  /cities : get all the cities, or the ones of a zip code.
      *
+     * @param zipCode the zip code of the cities, optional
      * @return the ResponseEntity with status 200 (OK) and the list of cities in body
      */
     @GetMapping("/cities")
     @Timed
-    public List<City> getAllCities() {
-        log.debug("REST request to get all Cities");
-        return cityRepository.findAll();
+    public List<City> getAllCities(@RequestParam(required = false) String zipCode) {
+        log.debug("REST request to get all Cities : {}", zipCode);
+        return zipCode != null ? cityRepository.findAllByZipCode(zipCode) : cityRepository.findAll();
     }
 
     /**
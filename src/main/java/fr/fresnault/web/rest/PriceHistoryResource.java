@@ -0,0 +1,49 @@
+package fr.fresnault.web.rest;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.codahale.metrics.annotation.Timed;
+
+import fr.fresnault.domain.enumeration.Source;
+import fr.fresnault.service.PriceHistoryService;
+import fr.fresnault.service.dto.PricePointDTO;
+
+/**
+ * REST controller for reading the price history of the ads.
+ */
+@RestController
+@RequestMapping("/api")
+public class PriceHistoryResource {
+
+	private final Logger log = LoggerFactory.getLogger(PriceHistoryResource.class);
+
+	private final PriceHistoryService priceHistoryService;
+
+	public PriceHistoryResource(PriceHistoryService priceHistoryService) {
+		this.priceHistoryService = priceHistoryService;
+	}
+
+	/**
+	 * GET /price-history/:refSource/:refId : get the price history of an ad.
+	 *
+	 * @param refSource
+	 *            the source of the ad
+	 * @param refId
+	 *            the id of the ad in its source
+	 * @return the list of the observed values of the ad, oldest first, empty
+	 *         if the ad is unknown
+	 */
+	@GetMapping("/price-history/{refSource}/{refId}")
+	@Timed
+	public List<PricePointDTO> getPriceHistory(@PathVariable Source refSource, @PathVariable String refId) {
+		log.debug("REST request to get the price history of : {} {}", refSource, refId);
+		return priceHistoryService.getHistory(refSource, refId);
+	}
+}
@@ -3,15 +3,20 @@ package fr.fresnault.web.rest;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.text.ParseException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
-import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,15 +25,20 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import fr.fresnault.domain.Property;
 import fr.fresnault.repository.PropertyRepository;
-import fr.fresnault.service.PropertyService;
 import fr.fresnault.web.rest.errors.BadRequestAlertException;
 import fr.fresnault.web.rest.util.HeaderUtil;
+import fr.fresnault.web.rest.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
 
 /**
@@ -42,13 +52,15 @@ public class PropertyResource {
 
 	private static final String ENTITY_NAME = "leboncoinDetailScrapperProperty";
 
+	private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
 	private final PropertyRepository propertyRepository;
 
-	private final PropertyService propertyService;
+	private final ObjectMapper objectMapper;
 
-	public PropertyResource(PropertyRepository propertyRepository, PropertyService propertyService) {
+	public PropertyResource(PropertyRepository propertyRepository, ObjectMapper objectMapper) {
 		this.propertyRepository = propertyRepository;
-		this.propertyService = propertyService;
+		this.objectMapper = objectMapper;
 	}
 
 	/**
@@ -76,6 +88,8 @@ public class PropertyResource {
 
 	/**
 	 * PUT /properties : Updates an existing property.
+	 * <p>
+	 * To scrap the ad of the property again, submit a scrap job instead.
 	 *
 	 * @param property
 	 *            the property to update
@@ -93,45 +107,66 @@ public class PropertyResource {
 		if (property.getId() == null) {
 			throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
 		}
-
-		Property result = null;
-
-		try {
-			result = propertyService.scrapProperty(property);
-			propertyRepository.save(result);
-		} catch (JSONException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (ParseException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-
+		Property result = propertyRepository.save(property);
 		return ResponseEntity.ok().headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, property.getId().toString()))
 				.body(result);
 	}
 
 	/**
-	 * GET /properties : get all the properties.
+	 * GET /properties : get a page of the properties, of a city or of all of
+	 * them.
 	 *
+	 * @param cityId
+	 *            the id of the city of the properties, optional
+	 * @param pageable
+	 *            the pagination information
 	 * @return the ResponseEntity with status 200 (OK) and the list of
-	 *         properties in body
+	 *         properties in body, with the pagination headers
 	 */
 	@GetMapping("/properties")
 	@Timed
-	public List<Property> getAllProperties() {
-		log.debug("REST request to get all Properties");
-		return propertyRepository.findAll();
+	public ResponseEntity<List<Property>> getAllProperties(@RequestParam(required = false) String cityId,
+			Pageable pageable) {
+		log.debug("REST request to get a page of Properties : {}", cityId);
+		Page<Property> page = cityId != null ? propertyRepository.findAllByCityId(cityId, pageable)
+				: propertyRepository.findAll(pageable);
+		HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/properties");
+		return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+	}
+
+	/**
+	 * GET /properties/stream : stream all the properties as newline delimited
+	 * JSON.
+	 * <p>
+	 * The properties are written one per line as they are read from the
+	 * database cursor, so the memory used does not depend on the size of the
+	 * collection.
+	 *
+	 * @param response
+	 *            the response the properties are written to
+	 * @throws IOException
+	 *             if the properties cannot be written
+	 */
+	@GetMapping(value = "/properties/stream", produces = APPLICATION_NDJSON_VALUE)
+	@Timed
+	public void streamAllProperties(HttpServletResponse response) throws IOException {
+		log.debug("REST request to stream all Properties");
+		response.setContentType(APPLICATION_NDJSON_VALUE);
+		ObjectWriter writer = objectMapper.writerFor(Property.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).withRootValueSeparator("");
+		try (Stream<Property> properties = propertyRepository.streamAllBy();
+				JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+			Iterator<Property> iterator = properties.iterator();
+			while (iterator.hasNext()) {
+				writer.writeValue(generator, iterator.next());
+				generator.writeRaw('\n');
+			}
+		}
 	}
 
 	/**
-	 * GET /properties/:id : get the "id" property.
+	 * GET /properties/:id : get the "id" property, from the property cache
+	 * when it is there.
 	 *
 	 * @param id
 	 *            the id of the property to retrieve
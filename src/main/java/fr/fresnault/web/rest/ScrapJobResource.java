@@ -0,0 +1,152 @@
+package fr.fresnault.web.rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.Valid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.codahale.metrics.annotation.Timed;
+
+import fr.fresnault.domain.enumeration.ScrapJobStatus;
+import fr.fresnault.service.ScrapJobService;
+import fr.fresnault.service.dto.ScrapJobDTO;
+import fr.fresnault.web.rest.errors.BadRequestAlertException;
+import fr.fresnault.web.rest.vm.ScrapRequestVM;
+import io.github.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for submitting scrap jobs and following them.
+ */
+@RestController
+@RequestMapping("/api")
+public class ScrapJobResource {
+
+	private final Logger log = LoggerFactory.getLogger(ScrapJobResource.class);
+
+	private static final String ENTITY_NAME = "scrapJob";
+
+	private static final long EVENTS_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+	private final ScrapJobService scrapJobService;
+
+	private final Executor executor;
+
+	public ScrapJobResource(ScrapJobService scrapJobService, @Qualifier("taskExecutor") Executor executor) {
+		this.scrapJobService = scrapJobService;
+		this.executor = executor;
+	}
+
+	/**
+	 * POST /scrap-jobs : Submit the scrap of an ad, by url or by ad id.
+	 * <p>
+	 * The scrap runs in the background: poll the returned Location, or
+	 * subscribe to its events, to get the result.
+	 *
+	 * @param scrapRequest
+	 *            the url or the id of the ad to scrap
+	 * @return the ResponseEntity with status 202 (Accepted) and with body the
+	 *         pending job, or with status 400 (Bad Request) if neither or both
+	 *         the url and the ad id are given, or with status 503 (Service
+	 *         Unavailable) if this node already runs too many jobs
+	 * @throws URISyntaxException
+	 *             if the Location URI syntax is incorrect
+	 */
+	@PostMapping("/scrap-jobs")
+	@Timed
+	public ResponseEntity<ScrapJobDTO> submitScrapJob(@Valid @RequestBody ScrapRequestVM scrapRequest)
+			throws URISyntaxException {
+		log.debug("REST request to submit a scrap job : {}", scrapRequest);
+		if ((scrapRequest.getUrl() == null) == (scrapRequest.getAdId() == null)) {
+			throw new BadRequestAlertException("Either an url or an ad id is expected", ENTITY_NAME, "urloradid");
+		}
+		ScrapJobDTO job = scrapRequest.getUrl() != null ? scrapJobService.submitUrl(scrapRequest.getUrl())
+				: scrapJobService.submitAdId(scrapRequest.getAdId());
+		return ResponseEntity.accepted().location(new URI("/api/scrap-jobs/" + job.getId())).body(job);
+	}
+
+	/**
+	 * GET /scrap-jobs/:id : get the state of the "id" scrap job.
+	 *
+	 * @param id
+	 *            the id of the job
+	 * @return the ResponseEntity with status 200 (OK) and with body the job,
+	 *         or with status 404 (Not Found)
+	 */
+	@GetMapping("/scrap-jobs/{id}")
+	@Timed
+	public ResponseEntity<ScrapJobDTO> getScrapJob(@PathVariable String id) {
+		log.debug("REST request to get scrap job : {}", id);
+		return ResponseUtil.wrapOrNotFound(scrapJobService.findOne(id));
+	}
+
+	/**
+	 * GET /scrap-jobs/:id/events : subscribe to the "id" scrap job.
+	 * <p>
+	 * Sends the current state of the job as a server-sent event, then its
+	 * final state when it ends, and closes the stream. A job running on
+	 * another node is followed by polling its state. The final state is sent
+	 * from the task executor: the job is completed by the bulk writer thread,
+	 * which must not wait for a slow subscriber.
+	 *
+	 * @param id
+	 *            the id of the job
+	 * @return the ResponseEntity with status 200 (OK) and the event stream, or
+	 *         with status 404 (Not Found), or with status 503 (Service
+	 *         Unavailable) if this node already follows too many jobs
+	 */
+	@GetMapping(value = "/scrap-jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	@Timed
+	public ResponseEntity<SseEmitter> subscribeScrapJob(@PathVariable String id) {
+		log.debug("REST request to subscribe to scrap job : {}", id);
+		Optional<ScrapJobDTO> job = scrapJobService.findOne(id);
+		if (!job.isPresent()) {
+			return ResponseEntity.notFound().build();
+		}
+		Optional<CompletableFuture<ScrapJobDTO>> completion = job.get().getStatus() == ScrapJobStatus.PENDING
+				? scrapJobService.getCompletion(id) : Optional.empty();
+		SseEmitter emitter = new SseEmitter(EVENTS_TIMEOUT);
+		try {
+			emitter.send(SseEmitter.event().name("job").data(job.get(), MediaType.APPLICATION_JSON));
+		} catch (IOException e) {
+			emitter.completeWithError(e);
+			return ResponseEntity.ok(emitter);
+		}
+		if (!completion.isPresent()) {
+			emitter.complete();
+			return ResponseEntity.ok(emitter);
+		}
+		completion.get().whenCompleteAsync((state, failure) -> {
+			if (failure != null) {
+				log.debug("Scrap job {} expired before it ended", id);
+				emitter.complete();
+				return;
+			}
+			try {
+				emitter.send(SseEmitter.event().name("job").data(state, MediaType.APPLICATION_JSON));
+				emitter.complete();
+			} catch (IOException e) {
+				log.debug("Subscriber of scrap job {} is gone", id);
+				emitter.completeWithError(e);
+			}
+		}, executor);
+		return ResponseEntity.ok(emitter);
+	}
+}
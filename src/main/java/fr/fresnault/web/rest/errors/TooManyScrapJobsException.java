@@ -0,0 +1,17 @@
+package fr.fresnault.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+/**
+ * Thrown when a node already follows as many scrap jobs as it can, that returns
+ * a Service Unavailable code.
+ */
+public class TooManyScrapJobsException extends AbstractThrowableProblem {
+
+    private static final long serialVersionUID = 1L;
+
+    public TooManyScrapJobsException() {
+        super(ErrorConstants.DEFAULT_TYPE, "Too many pending scrap jobs", Status.SERVICE_UNAVAILABLE);
+    }
+}
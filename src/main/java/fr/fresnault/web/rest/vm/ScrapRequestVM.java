@@ -0,0 +1,42 @@
+package fr.fresnault.web.rest.vm;
+
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+
+/**
+ * View Model object for submitting a scrap job, by ad url or by ad id. Only
+ * the urls of leboncoin are accepted, so that no other host is fetched.
+ */
+public class ScrapRequestVM {
+
+    @Size(max = 2000)
+    @Pattern(regexp = "^https?://(www\\.)?leboncoin\\.fr/\\S*$")
+    private String url;
+
+    @Pattern(regexp = "^[0-9]+$")
+    private String adId;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getAdId() {
+        return adId;
+    }
+
+    public void setAdId(String adId) {
+        this.adId = adId;
+    }
+
+    @Override
+    public String toString() {
+        return "ScrapRequestVM{" +
+            "url='" + url + '\'' +
+            ", adId='" + adId + '\'' +
+            "}";
+    }
+}
@@ -0,0 +1,60 @@
+package fr.fresnault.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Test the compact key of {@link PropertyPhoto}.
+ */
+public class PropertyPhotoTest {
+
+	private static final String THUMB_URL = "https://img.leboncoin.fr/ad-thumb/abc.jpg";
+
+	private static final String LARGE_URL = "https://img.leboncoin.fr/ad-large/abc.jpg";
+
+	@Test
+	public void urlsFollowingTheTemplateAreStoredAsAKey() {
+		PropertyPhoto photo = new PropertyPhoto().urls(THUMB_URL, LARGE_URL);
+
+		assertThat(photo.getPhotoKey()).isEqualTo("img/abc.jpg");
+		assertThat(photo.getPhotoThumbUrl()).isEqualTo(THUMB_URL);
+		assertThat(photo.getPhotoUrl()).isEqualTo(LARGE_URL);
+	}
+
+	@Test
+	public void otherUrlsAreStoredAsTheyAre() {
+		PropertyPhoto photo = new PropertyPhoto().urls("https://example.com/thumb.jpg", LARGE_URL);
+
+		assertThat(photo.getPhotoKey()).isNull();
+		assertThat(photo.getPhotoThumbUrl()).isEqualTo("https://example.com/thumb.jpg");
+		assertThat(photo.getPhotoUrl()).isEqualTo(LARGE_URL);
+	}
+
+	@Test
+	public void settingAnUrlComputesTheKeyAgain() {
+		PropertyPhoto photo = new PropertyPhoto().urls(THUMB_URL, LARGE_URL);
+
+		photo.setPhotoUrl("https://example.com/large.jpg");
+
+		assertThat(photo.getPhotoKey()).isNull();
+		assertThat(photo.getPhotoThumbUrl()).isEqualTo(THUMB_URL);
+		assertThat(photo.getPhotoUrl()).isEqualTo("https://example.com/large.jpg");
+
+		photo.photoUrl(LARGE_URL);
+
+		assertThat(photo.getPhotoKey()).isEqualTo("img/abc.jpg");
+	}
+
+	@Test
+	public void settingTheUrlsOneByOneComputesTheKey() {
+		PropertyPhoto photo = new PropertyPhoto();
+
+		photo.setPhotoThumbUrl(THUMB_URL);
+		photo.setPhotoUrl(LARGE_URL);
+
+		assertThat(photo.getPhotoKey()).isEqualTo("img/abc.jpg");
+		assertThat(photo.getPhotoThumbUrl()).isEqualTo(THUMB_URL);
+	}
+
+}
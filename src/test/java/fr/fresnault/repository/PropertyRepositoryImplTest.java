@@ -0,0 +1,83 @@
+package fr.fresnault.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Test the update written by {@link PropertyRepositoryImpl} for a re-scraped
+ * property.
+ */
+public class PropertyRepositoryImplTest {
+
+	@Test
+	public void diffSetsOnlyTheChangedFields() {
+		Document current = new Document("_id", "1").append("name", "Maison").append("price", 250000)
+				.append("type", "HOUSE");
+		Document scraped = new Document("name", "Maison").append("price", 240000).append("type", "HOUSE");
+
+		Update update = PropertyRepositoryImpl.diff(current, scraped);
+
+		assertThat(update.getUpdateObject()).isEqualTo(new Document("$set", new Document("price", 240000)));
+	}
+
+	@Test
+	public void diffWritesNothingForAnUnchangedProperty() {
+		Document current = new Document("_id", "1").append("name", "Maison").append("type", "HOUSE");
+
+		Update update = PropertyRepositoryImpl.diff(current, new Document("name", "Maison").append("type", "HOUSE"));
+
+		assertThat(update.getUpdateObject()).isEmpty();
+	}
+
+	@Test
+	public void diffKeepsTheFieldsThatAreNotScraped() {
+		Document current = new Document("_id", "1").append("type", "FLAT").append("bedroom_count", 2)
+				.append("surface_area", 120).append("living_area", 60).append("notes", "edited");
+		Document scraped = new Document("type", "FLAT").append("living_area", 60);
+
+		Update update = PropertyRepositoryImpl.diff(current, scraped);
+
+		assertThat(update.getUpdateObject()).isEmpty();
+	}
+
+	@Test
+	public void diffKeepsTheLivingAreaOfALand() {
+		Document current = new Document("_id", "1").append("type", "LAND").append("living_area", 60)
+				.append("surface_area", 500);
+		Document scraped = new Document("type", "LAND").append("surface_area", 450);
+
+		Update update = PropertyRepositoryImpl.diff(current, scraped);
+
+		assertThat(update.getUpdateObject()).isEqualTo(new Document("$set", new Document("surface_area", 450)));
+	}
+
+	@Test
+	public void diffUnsetsTheScrapedFieldsFoundEmpty() {
+		Document current = new Document("_id", "1").append("type", "HOUSE").append("price", 250000)
+				.append("living_area", 90);
+		Document scraped = new Document("type", "HOUSE");
+
+		Update update = PropertyRepositoryImpl.diff(current, scraped);
+
+		assertThat(update.getUpdateObject())
+				.isEqualTo(new Document("$unset", new Document("price", 1).append("living_area", 1)));
+	}
+
+	@Test
+	public void diffComparesThePhotosInAnyOrder() {
+		Document current = new Document("_id", "1").append("type", "HOUSE").append("photo",
+				Arrays.asList(new Document("photo_key", "img/a.jpg"), new Document("photo_key", "img/b.jpg")));
+		Document scraped = new Document("type", "HOUSE").append("photo",
+				Arrays.asList(new Document("photo_key", "img/b.jpg"), new Document("photo_key", "img/a.jpg")));
+
+		Update update = PropertyRepositoryImpl.diff(current, scraped);
+
+		assertThat(update.getUpdateObject()).isEmpty();
+	}
+
+}
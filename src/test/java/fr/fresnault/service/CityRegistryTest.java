@@ -0,0 +1,119 @@
+package fr.fresnault.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import fr.fresnault.domain.City;
+import fr.fresnault.repository.CityRepository;
+
+/**
+ * Test the lookups of {@link CityRegistry} and its refresh on invalidation.
+ */
+public class CityRegistryTest {
+
+	private CityRepository cityRepository;
+
+	private MongoTemplate mongoTemplate;
+
+	private CityRegistry cityRegistry;
+
+	private Consumer<List<String>> listener;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		cityRepository = mock(CityRepository.class);
+		mongoTemplate = mock(MongoTemplate.class);
+		CacheInvalidationService cacheInvalidationService = mock(CacheInvalidationService.class);
+		when(cityRepository.findAll()).thenReturn(Collections.singletonList(city("1", "Rennes", "35000")));
+		cityRegistry = new CityRegistry(cityRepository, mongoTemplate, cacheInvalidationService);
+		cityRegistry.warm();
+		ArgumentCaptor<Consumer<List<String>>> captor = ArgumentCaptor.forClass(Consumer.class);
+		verify(cacheInvalidationService).addListener(eq(City.class), captor.capture());
+		listener = captor.getValue();
+	}
+
+	@Test
+	public void getCityReturnsTheWarmedCity() {
+		assertThat(cityRegistry.getCity("Rennes", "35000").getId()).isEqualTo("1");
+		verify(mongoTemplate, never()).findOne(any(Query.class), eq(City.class));
+	}
+
+	@Test
+	public void getCityReadsAnExistingCityWithoutInsertingIt() {
+		when(mongoTemplate.findOne(any(Query.class), eq(City.class))).thenReturn(city("2", "Brest", "29200"));
+
+		assertThat(cityRegistry.getCity("Brest", "29200").getId()).isEqualTo("2");
+		assertThat(cityRegistry.getCity("Brest", "29200").getId()).isEqualTo("2");
+		verify(mongoTemplate, times(1)).findOne(any(Query.class), eq(City.class));
+		verify(mongoTemplate, never()).insert(any(City.class));
+	}
+
+	@Test
+	public void getCityInsertsAnUnknownCity() {
+		City city = cityRegistry.getCity("Vannes", "56000");
+
+		verify(mongoTemplate).insert(city);
+		assertThat(city.getName()).isEqualTo("Vannes");
+		assertThat(city.getZipCode()).isEqualTo("56000");
+		assertThat(cityRegistry.getCity("Vannes", "56000")).isSameAs(city);
+	}
+
+	@Test
+	public void getCityReadsTheCityInsertedConcurrently() {
+		when(mongoTemplate.findOne(any(Query.class), eq(City.class))).thenReturn(null, city("4", "Lorient", "56100"));
+		doThrow(new DuplicateKeyException("E11000")).when(mongoTemplate).insert(any(City.class));
+
+		assertThat(cityRegistry.getCity("Lorient", "56100").getId()).isEqualTo("4");
+	}
+
+	@Test
+	public void invalidationRefreshesTheCitiesOfTheZipCode() {
+		when(cityRepository.findAllByZipCode("35000"))
+				.thenReturn(Arrays.asList(city("5", "Rennes", "35000"), city("6", "Saint-Jacques", "35000")));
+
+		listener.accept(Collections.singletonList("35000"));
+
+		assertThat(cityRegistry.getCity("Rennes", "35000").getId()).isEqualTo("5");
+		assertThat(cityRegistry.getCity("Saint-Jacques", "35000").getId()).isEqualTo("6");
+		verify(mongoTemplate, never()).findOne(any(Query.class), eq(City.class));
+	}
+
+	@Test
+	public void invalidationDropsTheDeletedCities() {
+		when(cityRepository.findAllByZipCode("35000")).thenReturn(Collections.emptyList());
+
+		listener.accept(Collections.singletonList("35000"));
+
+		assertThat(cityRegistry.getCity("Rennes", "35000").getId()).isNull();
+		verify(mongoTemplate).insert(any(City.class));
+	}
+
+	private City city(String id, String name, String zipCode) {
+		City city = new City();
+		city.setId(id);
+		city.setName(name);
+		city.setZipCode(zipCode);
+		return city;
+	}
+
+}
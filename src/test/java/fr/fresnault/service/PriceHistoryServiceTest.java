@@ -0,0 +1,170 @@
+package fr.fresnault.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.bulk.BulkWriteResult;
+
+import fr.fresnault.domain.PriceChange;
+import fr.fresnault.domain.PriceHistory;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.enumeration.Source;
+import fr.fresnault.repository.PriceHistoryRepository;
+import fr.fresnault.service.dto.PricePointDTO;
+
+/**
+ * Test the delta encoding of the price changes recorded by
+ * {@link PriceHistoryService}, and their decoding.
+ */
+public class PriceHistoryServiceTest {
+
+	private PriceHistoryRepository priceHistoryRepository;
+
+	private BulkOperations operations;
+
+	private PriceHistoryService priceHistoryService;
+
+	@Before
+	public void setUp() {
+		priceHistoryRepository = mock(PriceHistoryRepository.class);
+		operations = mock(BulkOperations.class);
+		MappingMongoConverter converter = new MappingMongoConverter(mock(DbRefResolver.class),
+				new MongoMappingContext());
+		converter.afterPropertiesSet();
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+		when(mongoTemplate.getConverter()).thenReturn(converter);
+		when(mongoTemplate.bulkOps(BulkMode.UNORDERED, PriceHistory.class)).thenReturn(operations);
+		when(operations.execute()).thenReturn(matched(1));
+		priceHistoryService = new PriceHistoryService(priceHistoryRepository, mongoTemplate);
+	}
+
+	@Test
+	public void recordUpsertsTheFirstBucketOfTheMonth() {
+		when(priceHistoryRepository.findAllByRefSourceAndMonthAndRefIdIn(eq(Source.LEBONCOIN), anyString(),
+				anyCollection())).thenReturn(Collections.emptyList());
+
+		priceHistoryService.record(Collections.singletonList(property(new BigDecimal("250000.004"), 3)));
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(operations).upsert(any(Query.class), update.capture());
+		verify(operations).execute();
+		Document setOnInsert = (Document) update.getValue().getUpdateObject().get("$setOnInsert");
+		assertThat(setOnInsert).containsEntry("count", 1).containsEntry("last_price", 25000000L)
+				.containsEntry("last_room_count", 3).doesNotContainKeys("_id", "ref_source", "ref_id", "month");
+		Document change = ((List<?>) setOnInsert.get("changes")).stream().map(Document.class::cast).findFirst()
+				.get();
+		assertThat(change).containsEntry("p", 25000000L).containsEntry("rc", 3);
+	}
+
+	@Test
+	public void recordAppendsThePriceAsADelta() {
+		when(priceHistoryRepository.findAllByRefSourceAndMonthAndRefIdIn(eq(Source.LEBONCOIN), anyString(),
+				anyCollection())).thenReturn(Collections.singletonList(bucket(25000000L, 3)));
+
+		priceHistoryService.record(Collections.singletonList(property(new BigDecimal("240000"), 3)));
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(operations).updateOne(any(Query.class), update.capture());
+		Document updateObject = update.getValue().getUpdateObject();
+		assertThat((Document) updateObject.get("$set")).isEqualTo(new Document("last_price", 24000000L));
+		assertThat((Document) updateObject.get("$inc")).isEqualTo(new Document("count", 1));
+		Document change = (Document) ((Document) updateObject.get("$push")).get("changes");
+		assertThat(change).containsEntry("p", -1000000L).doesNotContainKey("rc");
+	}
+
+	@Test
+	public void recordRetriesTheDeltaOfAPriceUpdatedConcurrently() {
+		when(priceHistoryRepository.findAllByRefSourceAndMonthAndRefIdIn(eq(Source.LEBONCOIN), anyString(),
+				anyCollection())).thenReturn(Collections.singletonList(bucket(25000000L, 3)),
+						Collections.singletonList(bucket(24500000L, 3)));
+		when(operations.execute()).thenReturn(matched(0), matched(1));
+
+		priceHistoryService.record(Collections.singletonList(property(new BigDecimal("240000"), 3)));
+
+		ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(operations, times(2)).updateOne(query.capture(), update.capture());
+		assertThat(query.getAllValues().get(0).getQueryObject()).containsEntry("lastPrice", 25000000L);
+		assertThat(query.getAllValues().get(1).getQueryObject()).containsEntry("lastPrice", 24500000L);
+		Document change = (Document) ((Document) update.getAllValues().get(1).getUpdateObject().get("$push"))
+				.get("changes");
+		assertThat(change).containsEntry("p", -500000L);
+	}
+
+	@Test
+	public void recordSkipsTheUnchangedProperties() {
+		when(priceHistoryRepository.findAllByRefSourceAndMonthAndRefIdIn(eq(Source.LEBONCOIN), anyString(),
+				anyCollection())).thenReturn(Collections.singletonList(bucket(25000000L, 3)));
+
+		priceHistoryService.record(Collections.singletonList(property(new BigDecimal("250000.00"), 3)));
+
+		verify(operations, never()).updateOne(any(Query.class), any(Update.class));
+		verify(operations, never()).execute();
+	}
+
+	@Test
+	public void getHistoryAddsUpThePriceDeltas() {
+		PriceHistory bucket = bucket(null, null).month("2018-10");
+		bucket.setChanges(Arrays.asList(
+				new PriceChange().time(0).price(25000000L).livingArea(new BigDecimal("60")).roomCount(3),
+				new PriceChange().time(3600).price(-1000000L), new PriceChange().time(7200).roomCount(4)));
+		when(priceHistoryRepository.findAllByRefSourceAndRefIdOrderByMonthAsc(Source.LEBONCOIN, "1"))
+				.thenReturn(Collections.singletonList(bucket));
+
+		List<PricePointDTO> history = priceHistoryService.getHistory(Source.LEBONCOIN, "1");
+
+		assertThat(history).hasSize(3);
+		assertThat(history.get(0).getDate()).isEqualTo(Instant.parse("2018-10-01T00:00:00Z"));
+		assertThat(history.get(0).getPrice()).isEqualByComparingTo("250000");
+		assertThat(history.get(1).getDate()).isEqualTo(Instant.parse("2018-10-01T01:00:00Z"));
+		assertThat(history.get(1).getPrice()).isEqualByComparingTo("240000");
+		assertThat(history.get(1).getLivingArea()).isEqualByComparingTo("60");
+		assertThat(history.get(1).getRoomCount()).isEqualTo(3);
+		assertThat(history.get(2).getPrice()).isEqualByComparingTo("240000");
+		assertThat(history.get(2).getRoomCount()).isEqualTo(4);
+	}
+
+	private BulkWriteResult matched(int count) {
+		return BulkWriteResult.acknowledged(0, count, 0, count, Collections.emptyList());
+	}
+
+	private Property property(BigDecimal price, Integer roomCount) {
+		return new Property().refSource(Source.LEBONCOIN).refId("1").price(price).roomCount(roomCount);
+	}
+
+	private PriceHistory bucket(Long lastPrice, Integer lastRoomCount) {
+		PriceHistory bucket = new PriceHistory().refSource(Source.LEBONCOIN).refId("1");
+		bucket.setId("bucket");
+		bucket.setLastPrice(lastPrice);
+		bucket.setLastRoomCount(lastRoomCount);
+		return bucket;
+	}
+
+}
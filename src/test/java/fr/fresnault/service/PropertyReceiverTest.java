@@ -0,0 +1,97 @@
+package fr.fresnault.service;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.AcknowledgeMode;
+
+import com.codahale.metrics.MetricRegistry;
+import com.rabbitmq.client.Channel;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+
+/**
+ * Test the acknowledgement of the scraps by {@link PropertyReceiver}.
+ */
+public class PropertyReceiverTest {
+
+	private PropertyService propertyService;
+
+	private PropertyBulkWriter propertyBulkWriter;
+
+	private ApplicationProperties applicationProperties;
+
+	private Channel channel;
+
+	private final Property property = new Property().url("https://www.leboncoin.fr/ventes_immobilieres/1.htm/");
+
+	@Before
+	public void setUp() {
+		propertyService = mock(PropertyService.class);
+		propertyBulkWriter = mock(PropertyBulkWriter.class);
+		applicationProperties = new ApplicationProperties();
+		channel = mock(Channel.class);
+	}
+
+	@Test
+	public void receiveAcknowledgesTheWrittenScrap() throws IOException {
+		when(propertyService.scrapPropertyAsync(property))
+				.thenReturn(CompletableFuture.completedFuture(ScrapResult.updated(property)));
+		when(propertyBulkWriter.write(any(ScrapResult.class))).thenReturn(CompletableFuture.completedFuture(property));
+
+		receiver().receive(property, channel, 1, false);
+
+		verify(channel).basicAck(1, false);
+	}
+
+	@Test
+	public void receiveRequeuesATransientFailureOnce() throws IOException {
+		when(propertyService.scrapPropertyAsync(property)).thenReturn(failed(new UncheckedIOException(new IOException())));
+
+		receiver().receive(property, channel, 1, false);
+		receiver().receive(property, channel, 2, true);
+
+		verify(channel).basicNack(1, false, true);
+		verify(channel).basicNack(2, false, false);
+	}
+
+	@Test
+	public void receiveRejectsAScrapThatThrows() throws IOException {
+		when(propertyService.scrapPropertyAsync(property)).thenThrow(new NullPointerException());
+
+		receiver().receive(property, channel, 1, false);
+
+		verify(channel).basicNack(1, false, false);
+	}
+
+	@Test
+	public void receiveRejectsAScrapThatThrowsInAutoMode() {
+		applicationProperties.getConsumer().setAcknowledgeMode(AcknowledgeMode.AUTO);
+		when(propertyService.scrapPropertyAsync(property)).thenThrow(new IllegalArgumentException());
+
+		assertThatThrownBy(() -> receiver().receive(property, channel, 1, false))
+				.isInstanceOf(AmqpRejectAndDontRequeueException.class);
+	}
+
+	private PropertyReceiver receiver() {
+		return new PropertyReceiver(propertyService, propertyBulkWriter, applicationProperties, new MetricRegistry());
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(e);
+		return future;
+	}
+
+}
@@ -0,0 +1,78 @@
+package fr.fresnault.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+import fr.fresnault.service.ScrapResult.Status;
+import fr.fresnault.service.fetch.FetchedPage;
+import fr.fresnault.service.fetch.PageFetcher;
+import fr.fresnault.service.parser.AdviewFingerprinter;
+import fr.fresnault.service.parser.AdviewMapper;
+import fr.fresnault.service.parser.FluxStateExtractor;
+
+/**
+ * Test how {@link PropertyService} classifies the redirected ads.
+ */
+public class PropertyServiceTest {
+
+	private static final String URL = "https://www.leboncoin.fr/ventes_immobilieres/1424584605.htm/";
+
+	private PropertyService propertyService;
+
+	private byte[] adPage;
+
+	@Before
+	public void setUp() throws IOException {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		propertyService = new PropertyService(mock(PageFetcher.class), new FluxStateExtractor(new ObjectMapper()),
+				new AdviewFingerprinter(), new AdviewMapper(), new RefreshPolicy(applicationProperties),
+				applicationProperties, new ConcurrentMapCacheManager(), new MetricRegistry());
+		adPage = Files.readAllBytes(Paths.get("src/jmh/resources/corpus/flat-photos.html"));
+	}
+
+	@Test
+	public void scrapPropertyMapsTheAdRedirectedToANewUrl() {
+		ScrapResult result = scrap("https://www.leboncoin.fr/ventes_immobilieres/1424584605.htm", adPage);
+
+		assertThat(result.getStatus()).isEqualTo(Status.UPDATED);
+		assertThat(result.getProperty().getActive()).isTrue();
+		assertThat(result.getProperty().getRefId()).isEqualTo("1424584605");
+	}
+
+	@Test
+	public void scrapPropertyRemovesTheAdRedirectedToAListing() {
+		ScrapResult result = scrap("https://www.leboncoin.fr/recherche/?category=9", adPage);
+
+		assertThat(result.getStatus()).isEqualTo(Status.REMOVED);
+		assertThat(result.getProperty().getActive()).isFalse();
+		assertThat(result.getProperty().getNextRefreshAt()).isNull();
+	}
+
+	@Test
+	public void scrapPropertyRemovesTheAdRedirectedToAPageWithoutAdview() {
+		ScrapResult result = scrap("https://www.leboncoin.fr/",
+				"<html><script>window.FLUX_STATE = {\"config\":{}}</script></html>".getBytes(StandardCharsets.UTF_8));
+
+		assertThat(result.getStatus()).isEqualTo(Status.REMOVED);
+	}
+
+	private ScrapResult scrap(String location, byte[] body) {
+		return propertyService.scrapProperty(new Property().url(URL),
+				new FetchedPage(URL, location, 200, StandardCharsets.UTF_8, body, 1));
+	}
+
+}
@@ -0,0 +1,131 @@
+package fr.fresnault.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.ScrapJob;
+import fr.fresnault.domain.enumeration.ScrapJobStatus;
+import fr.fresnault.repository.PropertyRepository;
+import fr.fresnault.repository.ScrapJobRepository;
+import fr.fresnault.service.dto.ScrapJobDTO;
+import fr.fresnault.web.rest.errors.TooManyScrapJobsException;
+
+/**
+ * Test that {@link ScrapJobService} shares the state of the jobs through
+ * Mongo, and bounds the jobs it follows.
+ */
+public class ScrapJobServiceTest {
+
+	private static final String URL = "https://www.leboncoin.fr/ventes_immobilieres/1.htm/";
+
+	private PropertyService propertyService;
+
+	private PropertyBulkWriter propertyBulkWriter;
+
+	private ScrapJobRepository scrapJobRepository;
+
+	private ApplicationProperties applicationProperties;
+
+	private ScrapJobService scrapJobService;
+
+	@Before
+	public void setUp() {
+		propertyService = mock(PropertyService.class);
+		propertyBulkWriter = mock(PropertyBulkWriter.class);
+		scrapJobRepository = mock(ScrapJobRepository.class);
+		applicationProperties = new ApplicationProperties();
+		scrapJobService = new ScrapJobService(propertyService, propertyBulkWriter, mock(PropertyRepository.class),
+				scrapJobRepository, Runnable::run, applicationProperties);
+	}
+
+	@Test
+	public void submitSavesTheFinalStateOfTheJob() {
+		Property written = new Property().url(URL);
+		written.setId("property");
+		when(propertyService.scrapPropertyAsync(any(Property.class)))
+				.thenReturn(CompletableFuture.completedFuture(ScrapResult.updated(written)));
+		when(propertyBulkWriter.write(any(ScrapResult.class))).thenReturn(CompletableFuture.completedFuture(written));
+
+		ScrapJobDTO job = scrapJobService.submitUrl(URL);
+
+		assertThat(job.getStatus()).isEqualTo(ScrapJobStatus.PENDING);
+		ArgumentCaptor<ScrapJob> saved = ArgumentCaptor.forClass(ScrapJob.class);
+		verify(scrapJobRepository).insert(saved.capture());
+		verify(scrapJobRepository).save(saved.getValue());
+		assertThat(saved.getValue().getId()).isEqualTo(job.getId());
+		assertThat(saved.getValue().getStatus()).isEqualTo(ScrapJobStatus.DONE);
+		assertThat(saved.getValue().getPropertyId()).isEqualTo("property");
+		assertThat(saved.getValue().getExpireAt()).isAfter(saved.getValue().getCompletedDate());
+	}
+
+	@Test
+	public void submitRejectsTheJobsBeyondTheMaxPendingJobs() {
+		applicationProperties.getScrap().setMaxPendingJobs(1);
+		when(propertyService.scrapPropertyAsync(any(Property.class))).thenReturn(new CompletableFuture<>());
+
+		scrapJobService.submitUrl(URL);
+
+		assertThatThrownBy(() -> scrapJobService.submitUrl(URL)).isInstanceOf(TooManyScrapJobsException.class);
+	}
+
+	@Test
+	public void getCompletionFollowsAJobOfAnotherNode() {
+		when(scrapJobRepository.findById("job")).thenReturn(Optional.of(job(ScrapJobStatus.PENDING)));
+		when(scrapJobRepository.findAllById(anyIterable()))
+				.thenReturn(Collections.singletonList(job(ScrapJobStatus.PENDING)));
+		CompletableFuture<ScrapJobDTO> completion = scrapJobService.getCompletion("job").get();
+
+		scrapJobService.completeWatchedJobs();
+		assertThat(completion).isNotDone();
+
+		when(scrapJobRepository.findAllById(anyIterable()))
+				.thenReturn(Collections.singletonList(job(ScrapJobStatus.DONE)));
+		scrapJobService.completeWatchedJobs();
+		assertThat(completion.join().getStatus()).isEqualTo(ScrapJobStatus.DONE);
+	}
+
+	@Test
+	public void getCompletionFailsWhenTheJobOfAnotherNodeExpires() {
+		when(scrapJobRepository.findById("job")).thenReturn(Optional.of(job(ScrapJobStatus.PENDING)));
+		when(scrapJobRepository.findAllById(anyIterable())).thenReturn(Collections.emptyList());
+		CompletableFuture<ScrapJobDTO> completion = scrapJobService.getCompletion("job").get();
+
+		scrapJobService.completeWatchedJobs();
+
+		assertThat(completion).isCompletedExceptionally();
+	}
+
+	@Test
+	public void getCompletionRejectsTheJobsBeyondTheMaxPendingJobs() {
+		applicationProperties.getScrap().setMaxPendingJobs(1);
+		when(scrapJobRepository.findById(any(String.class))).thenReturn(Optional.of(job(ScrapJobStatus.PENDING)));
+
+		scrapJobService.getCompletion("job");
+
+		assertThatThrownBy(() -> scrapJobService.getCompletion("other"))
+				.isInstanceOf(TooManyScrapJobsException.class);
+	}
+
+	private ScrapJob job(ScrapJobStatus status) {
+		ScrapJob job = new ScrapJob().url(URL).status(status).submittedDate(Instant.now());
+		job.setId("job");
+		return job;
+	}
+
+}
@@ -0,0 +1,140 @@
+package fr.fresnault.service.fetch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.service.fetch.HostRateLimiter.TokenBucket;
+
+/**
+ * Test the pacing and the adaptive rate of the {@link HostRateLimiter} buckets.
+ */
+public class HostRateLimiterTest {
+
+	private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private ApplicationProperties.Fetch.RateLimit properties;
+
+	@Before
+	public void setUp() {
+		properties = new ApplicationProperties.Fetch.RateLimit();
+		properties.setRate(10);
+		properties.setBurst(2);
+		properties.setMinRate(1);
+		properties.setMaxRate(20);
+		properties.setIncrease(1);
+		properties.setDecreaseFactor(0.5);
+		properties.setThrottleCooldown(5000);
+	}
+
+	@Test
+	public void reserveAllowsTheBurstThenSpacesTheRequests() {
+		TokenBucket bucket = new TokenBucket(properties);
+		long now = System.nanoTime();
+
+		assertThat(bucket.reserve(now)).isZero();
+		assertThat(bucket.reserve(now)).isZero();
+		assertThat(bucket.reserve(now)).isEqualTo(INTERVAL);
+		assertThat(bucket.reserve(now)).isEqualTo(2 * INTERVAL);
+	}
+
+	@Test
+	public void reserveDoesNotAccumulateIdleTime() {
+		TokenBucket bucket = new TokenBucket(properties);
+		long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+
+		assertThat(bucket.reserve(now)).isZero();
+		assertThat(bucket.reserve(now)).isZero();
+		assertThat(bucket.reserve(now)).isEqualTo(INTERVAL);
+	}
+
+	@Test
+	public void pauseDelaysTheNextRequests() {
+		TokenBucket bucket = new TokenBucket(properties);
+		long now = System.nanoTime();
+		long retryAfter = TimeUnit.SECONDS.toNanos(1);
+
+		bucket.pause(now, retryAfter);
+
+		assertThat(bucket.reserve(now)).isEqualTo(retryAfter);
+		assertThat(bucket.reserve(now)).isEqualTo(retryAfter + INTERVAL);
+	}
+
+	@Test
+	public void pauseHoldsTheWholeBurst() {
+		TokenBucket bucket = new TokenBucket(new ApplicationProperties.Fetch.RateLimit());
+		long now = System.nanoTime();
+		long retryAfter = TimeUnit.SECONDS.toNanos(3);
+
+		bucket.pause(now, retryAfter);
+
+		assertThat(bucket.reserve(now)).isEqualTo(retryAfter);
+	}
+
+	@Test
+	public void decreaseHalvesTheRateOncePerCooldown() {
+		TokenBucket bucket = new TokenBucket(properties);
+		long now = System.nanoTime();
+
+		assertThat(bucket.decrease(now)).isTrue();
+		assertThat(bucket.getRate()).isEqualTo(5);
+		assertThat(bucket.decrease(now + TimeUnit.SECONDS.toNanos(1))).isFalse();
+		assertThat(bucket.getRate()).isEqualTo(5);
+		assertThat(bucket.decrease(now + TimeUnit.SECONDS.toNanos(5))).isTrue();
+		assertThat(bucket.getRate()).isEqualTo(2.5);
+	}
+
+	@Test
+	public void decreaseStopsAtTheMinRate() {
+		properties.setRate(1.5);
+		TokenBucket bucket = new TokenBucket(properties);
+
+		bucket.decrease(System.nanoTime());
+
+		assertThat(bucket.getRate()).isEqualTo(1);
+	}
+
+	@Test
+	public void increaseSlowsDownAboveTheThrottledRate() {
+		TokenBucket bucket = new TokenBucket(properties);
+		bucket.decrease(System.nanoTime());
+
+		bucket.increase();
+		assertThat(bucket.getRate()).isCloseTo(5.2, within(1e-9));
+
+		while (bucket.getRate() < 10) {
+			bucket.increase();
+		}
+		double throttled = bucket.getRate();
+		bucket.increase();
+		assertThat(bucket.getRate() - throttled).isCloseTo(0.1 / throttled, within(1e-9));
+	}
+
+	@Test
+	public void increaseStopsAtTheMaxRate() {
+		properties.setRate(19.99);
+		TokenBucket bucket = new TokenBucket(properties);
+
+		bucket.increase();
+		bucket.increase();
+
+		assertThat(bucket.getRate()).isEqualTo(20);
+	}
+
+	@Test
+	public void rateLimiterIsDisabled() {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		applicationProperties.getFetch().getRateLimit().setEnabled(false);
+		HostRateLimiter rateLimiter = new HostRateLimiter(applicationProperties);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(rateLimiter.reserve("www.leboncoin.fr")).isZero();
+		}
+	}
+
+}
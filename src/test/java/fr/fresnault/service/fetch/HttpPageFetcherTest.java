@@ -0,0 +1,61 @@
+package fr.fresnault.service.fetch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import fr.fresnault.config.ApplicationProperties;
+import fr.fresnault.config.LeBonCoinConfig;
+
+/**
+ * Test that {@link HttpPageFetcher} fails the fetches of invalid urls instead
+ * of throwing.
+ */
+public class HttpPageFetcherTest {
+
+	private HttpPageFetcher pageFetcher;
+
+	@Before
+	public void setUp() throws IOException {
+		ApplicationProperties applicationProperties = new ApplicationProperties();
+		pageFetcher = new HttpPageFetcher(applicationProperties, new LeBonCoinConfig(),
+				new HostRateLimiter(applicationProperties), Runnable::run, new MetricRegistry());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		pageFetcher.destroy();
+	}
+
+	@Test
+	public void fetchFailsWithoutUrl() {
+		assertFailed(pageFetcher.fetch(null));
+	}
+
+	@Test
+	public void fetchFailsWithoutHost() {
+		assertFailed(pageFetcher.fetch("/ventes_immobilieres/1.htm/"));
+		assertFailed(pageFetcher.fetch("file:///ventes_immobilieres/1.htm"));
+	}
+
+	@Test
+	public void fetchFailsWithAnInvalidUrl() {
+		assertFailed(pageFetcher.fetch("https://www.leboncoin.fr/ventes immobilieres/1.htm"));
+	}
+
+	private void assertFailed(CompletableFuture<FetchedPage> future) {
+		assertThat(future).isCompletedExceptionally();
+		assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class)
+				.hasCauseInstanceOf(IllegalArgumentException.class);
+	}
+
+}
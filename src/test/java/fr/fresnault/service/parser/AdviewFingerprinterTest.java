@@ -0,0 +1,92 @@
+package fr.fresnault.service.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Test which changes of an adview alter its {@link AdviewFingerprinter}
+ * fingerprint.
+ */
+public class AdviewFingerprinterTest {
+
+	private static final String ADVIEW = "{\"list_id\":1,\"subject\":\"Maison\",\"index_date\":\"2018-10-01\","
+			+ "\"price\":[250000],\"counters\":{\"views\":12},\"attributes\":[{\"key\":\"rooms\",\"value\":\"4\"}],"
+			+ "\"has_phone\":true}";
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	private final AdviewFingerprinter fingerprinter = new AdviewFingerprinter();
+
+	@Test
+	public void fingerprintIsStable() throws IOException {
+		assertThat(fingerprint(ADVIEW)).isEqualTo(fingerprint(ADVIEW));
+	}
+
+	@Test
+	public void fingerprintIgnoresTheFieldsThatAreNotMapped() throws IOException {
+		String viewed = ADVIEW.replace("2018-10-01", "2018-10-02").replace("12", "13").replace("true", "false");
+
+		assertThat(fingerprint(viewed)).isEqualTo(fingerprint(ADVIEW));
+	}
+
+	@Test
+	public void fingerprintIgnoresTheWhitespaces() throws IOException {
+		assertThat(fingerprint(ADVIEW.replace(",", " ,\n ").replace(":", " : "))).isEqualTo(fingerprint(ADVIEW));
+	}
+
+	@Test
+	public void fingerprintChangesWithTheMappedFields() throws IOException {
+		long fingerprint = fingerprint(ADVIEW);
+
+		assertThat(fingerprint(ADVIEW.replace("250000", "240000"))).isNotEqualTo(fingerprint);
+		assertThat(fingerprint(ADVIEW.replace("\"4\"", "\"5\""))).isNotEqualTo(fingerprint);
+		assertThat(fingerprint(ADVIEW.replace("[250000]", "[\"250000\"]"))).isNotEqualTo(fingerprint);
+		assertThat(fingerprint(ADVIEW.replace("\"subject\":\"Maison\",", ""))).isNotEqualTo(fingerprint);
+	}
+
+	@Test
+	public void fingerprintLeavesTheParserOnTheEndOfTheAdview() throws IOException {
+		try (JsonParser parser = jsonFactory.createParser("{\"adview\":" + ADVIEW + ",\"next\":1}")) {
+			parser.nextToken();
+			parser.nextToken();
+			parser.nextToken();
+
+			fingerprinter.fingerprint(parser);
+
+			assertThat(parser.currentToken()).isEqualTo(JsonToken.END_OBJECT);
+			assertThat(parser.nextFieldName()).isEqualTo("next");
+		}
+	}
+
+	@Test
+	public void fingerprintCopiesTheMappedFields() throws IOException {
+		StringWriter writer = new StringWriter();
+		long fingerprint;
+		try (JsonParser parser = jsonFactory.createParser(ADVIEW);
+				JsonGenerator copy = jsonFactory.createGenerator(writer)) {
+			parser.nextToken();
+			fingerprint = fingerprinter.fingerprint(parser, copy);
+		}
+
+		assertThat(writer.toString()).isEqualTo("{\"list_id\":1,\"subject\":\"Maison\",\"price\":[250000],"
+				+ "\"attributes\":[{\"key\":\"rooms\",\"value\":\"4\"}]}");
+		assertThat(fingerprint).isEqualTo(fingerprint(ADVIEW));
+	}
+
+	private long fingerprint(String adview) throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(adview)) {
+			parser.nextToken();
+			return fingerprinter.fingerprint(parser);
+		}
+	}
+
+}
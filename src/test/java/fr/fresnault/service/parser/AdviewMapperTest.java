@@ -0,0 +1,122 @@
+package fr.fresnault.service.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.fresnault.domain.Property;
+import fr.fresnault.domain.PropertyPhoto;
+import fr.fresnault.domain.enumeration.Source;
+import fr.fresnault.domain.enumeration.Transaction;
+import fr.fresnault.domain.enumeration.Type;
+
+/**
+ * Test that {@link AdviewMapper} maps the adviews on the same properties as
+ * the JSON object mapping it replaced.
+ */
+public class AdviewMapperTest {
+
+	private static final String ATTRIBUTES = "\"attributes\":[{\"key\":\"real_estate_type\",\"value\":\"2\","
+			+ "\"value_label\":\"Appartement\"},{\"key\":\"rooms\",\"value\":\"3\"},{\"key\":\"square\","
+			+ "\"value\":\"62\"}]";
+
+	private final AdviewMapper mapper = new AdviewMapper();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void mapSkipsTheExtraFieldsAndTheNestedLocation() throws IOException {
+		Property property = map("{\"list_id\":1424584605,\"subject\":\"Appartement T3\",\"body\":\"Lumineux\","
+				+ "\"category_name\":\"Ventes immobilières\",\"first_publication_date\":\"2018-10-01 12:30:00\","
+				+ "\"owner\":{\"name\":\"Agence\",\"store_id\":[1,2]},\"price\":[250000],\"price_calendar\":null,"
+				+ ATTRIBUTES + ",\"images\":{\"thumb_url\":\"x\",\"nb_images\":1,"
+				+ "\"urls_thumb\":[\"https://img0.leboncoin.fr/ad-thumb/a.jpg\"],"
+				+ "\"urls_large\":[\"https://img0.leboncoin.fr/ad-large/a.jpg\"]},"
+				+ "\"location\":{\"region_name\":\"Bretagne\",\"city\":\"Rennes\",\"zipcode\":\"35000\","
+				+ "\"feature\":{\"type\":\"Point\",\"coordinates\":[-1.68,48.11]},\"lat\":48.11},"
+				+ "\"options\":{\"booster\":false}}");
+
+		Property expected = new Property().refSource(Source.LEBONCOIN).refId("1424584605").name("Appartement T3")
+				.transaction(Transaction.SELL).type(Type.FLAT).description("Lumineux")
+				.createdDate(LocalDateTime.parse("2018-10-01T12:30:00").atZone(ZoneId.systemDefault()).toInstant())
+				.price(new BigDecimal("250000")).livingArea(new BigDecimal("62"))
+				// The JSON mapping left it null, Integer.getInteger reads a system property
+				.roomCount(3);
+		assertThat(property).isEqualToIgnoringGivenFields(expected, "city", "photos");
+		assertThat(property.getCity().getName()).isEqualTo("Rennes");
+		assertThat(property.getCity().getZipCode()).isEqualTo("35000");
+		assertThat(property.getPhotos()).hasSize(1);
+		PropertyPhoto photo = property.getPhotos().iterator().next();
+		assertThat(photo.getPhotoSeq()).isEqualTo(0);
+		assertThat(photo.getPhotoThumbUrl()).isEqualTo("https://img0.leboncoin.fr/ad-thumb/a.jpg");
+		assertThat(photo.getPhotoUrl()).isEqualTo("https://img0.leboncoin.fr/ad-large/a.jpg");
+	}
+
+	@Test
+	public void mapReadsThePriceAsAnInt() throws IOException {
+		assertThat(map("{\"price\":[250000]}").getPrice()).isEqualByComparingTo("250000");
+		assertThat(map("{\"price\":[\"250000\"]}").getPrice()).isEqualByComparingTo("250000");
+		assertThat(map("{\"price\":[250000.9]}").getPrice()).isEqualByComparingTo("250000");
+		assertThat(map("{\"price\":[250000, 1]}").getPrice()).isEqualByComparingTo("250000");
+		assertThat(map("{\"price\":[]}").getPrice()).isNull();
+	}
+
+	@Test
+	public void mapLeavesTheInvalidNumbersNull() throws IOException {
+		// The JSON mapping failed the whole ad on these
+		Property property = map("{\"price\":[\"à débattre\"],\"attributes\":[{\"key\":\"real_estate_type\","
+				+ "\"value\":\"3\"},{\"key\":\"square\",\"value\":\"1 200\"},{\"key\":\"rooms\",\"value\":\"T3\"}]}");
+
+		assertThat(property.getType()).isEqualTo(Type.LAND);
+		assertThat(property.getPrice()).isNull();
+		assertThat(property.getSurfaceArea()).isNull();
+		assertThat(property.getLivingArea()).isNull();
+		assertThat(property.getRoomCount()).isNull();
+	}
+
+	@Test
+	public void mapWithEmptyImagesAndAttributes() throws IOException {
+		Property property = map("{\"category_name\":\"Locations\",\"images\":{},\"attributes\":[]}");
+
+		assertThat(property.getTransaction()).isEqualTo(Transaction.RENT);
+		assertThat(property.getType()).isEqualTo(Type.UNKNOWN);
+		assertThat(property.getPhotos()).isEmpty();
+		assertThat(property.getLivingArea()).isNull();
+		assertThat(property.getRoomCount()).isNull();
+	}
+
+	@Test
+	public void mapWithMissingFields() throws IOException {
+		Instant start = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+		Property property = map("{\"location\":{\"lat\":48.11}}");
+
+		assertThat(property.getRefId()).isNull();
+		assertThat(property.getName()).isEmpty();
+		assertThat(property.getDescription()).isEmpty();
+		assertThat(property.getTransaction()).isEqualTo(Transaction.SELL);
+		assertThat(property.getType()).isEqualTo(Type.UNKNOWN);
+		assertThat(property.getCreatedDate()).isAfterOrEqualTo(start);
+		assertThat(property.getPrice()).isNull();
+		assertThat(property.getCity().getName()).isEmpty();
+		assertThat(property.getCity().getZipCode()).isEmpty();
+		assertThat(map("{}").getCity()).isNull();
+	}
+
+	private Property map(String adview) throws IOException {
+		JsonParser parser = objectMapper.getFactory().createParser(adview);
+		parser.nextToken();
+		return mapper.map(parser, new Property());
+	}
+
+}
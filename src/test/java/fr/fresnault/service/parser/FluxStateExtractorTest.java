@@ -0,0 +1,88 @@
+package fr.fresnault.service.parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test the byte scanner and the streaming lookup of {@link FluxStateExtractor}.
+ */
+public class FluxStateExtractorTest {
+
+	private final FluxStateExtractor extractor = new FluxStateExtractor(new ObjectMapper());
+
+	@Test
+	public void indexOfFluxStateSkipsTheWhitespaces() {
+		byte[] page = bytes("<script>window.FLUX_STATE \t\n=\r\n {\"adview\":{}}</script>");
+
+		assertThat(extractor.indexOfFluxState(page)).isEqualTo(page.length - "{\"adview\":{}}</script>".length());
+	}
+
+	@Test
+	public void indexOfFluxStateSkipsTheMarkersThatAreNotAssigned() {
+		String assignment = "window.FLUX_STATE={}";
+		byte[] page = bytes("if (window.FLUX_STATE) {} if (window.FLUX_STATE == null) {} " + assignment);
+
+		assertThat(extractor.indexOfFluxState(page)).isEqualTo(page.length - 2);
+	}
+
+	@Test
+	public void indexOfFluxStateWithoutMarker() {
+		assertThat(extractor.indexOfFluxState(bytes("<html><body>window.FLUX</body></html>"))).isEqualTo(-1);
+		assertThat(extractor.indexOfFluxState(bytes("window.FLUX_STATE = "))).isEqualTo(-1);
+		assertThat(extractor.indexOfFluxState(new byte[0])).isEqualTo(-1);
+	}
+
+	@Test
+	public void findAdviewSkipsTheObjectsBefore() throws IOException {
+		byte[] page = bytes("window.FLUX_STATE = {\"config\":{\"adview\":{\"list_id\":1}},\"list\":[1,{\"a\":2}],"
+				+ "\"adview\":{\"list_id\":2}};");
+
+		Optional<JsonParser> parser = extractor.findAdview(page);
+
+		assertThat(parser).isPresent();
+		assertThat(parser.get().nextToken()).isEqualTo(JsonToken.FIELD_NAME);
+		assertThat(parser.get().nextValue()).isEqualTo(JsonToken.VALUE_NUMBER_INT);
+		assertThat(parser.get().getIntValue()).isEqualTo(2);
+	}
+
+	@Test
+	public void findAdviewWithoutAdview() throws IOException {
+		assertThat(extractor.findAdview(bytes("window.FLUX_STATE = {\"adview\":null,\"config\":{}}"))).isEmpty();
+		assertThat(extractor.findAdview(bytes("<html></html>"))).isEmpty();
+	}
+
+	@Test
+	public void findAdviewInScript() throws IOException {
+		Optional<JsonParser> parser = extractor.findAdviewInScript("window.FLUX_STATE = {\"adview\":{\"list_id\":3}}");
+
+		assertThat(parser).isPresent();
+		assertThat(parser.get().nextFieldName()).isEqualTo("list_id");
+	}
+
+	@Test
+	public void findAdviewInACorpusPage() throws IOException {
+		byte[] page = Files.readAllBytes(Paths.get("src/jmh/resources/corpus/flat-photos.html"));
+
+		Optional<JsonParser> parser = extractor.findAdview(page);
+
+		assertThat(parser).isPresent();
+		assertThat(parser.get().nextFieldName()).isEqualTo("list_id");
+		assertThat(parser.get().nextLongValue(0)).isEqualTo(1424584605L);
+	}
+
+	private static byte[] bytes(String page) {
+		return page.getBytes(StandardCharsets.UTF_8);
+	}
+
+}